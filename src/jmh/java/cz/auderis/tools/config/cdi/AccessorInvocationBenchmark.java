@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.enterprise.context.Dependent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures method invocations on configuration objects created by {@link ConfigurationInjector},
+ * both standard proxies and memoizing accessors, and the creation of configuration objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessorInvocationBenchmark {
+
+	@Param({ "false", "true" })
+	boolean memoizingAccessors;
+
+	@Param({ "false", "true" })
+	boolean valueCache;
+
+	ConfigurationInjector injector;
+	BenchmarkConfig config;
+
+	@Setup
+	public void prepareAccessor() {
+		final Map<String, String> data = new HashMap<String, String>();
+		data.put("name", "benchmark");
+		data.put("port", "8080");
+		data.put("secure", "true");
+		final InjectorDataProvider provider = new InjectorDataProvider(
+				ConfigurationInjectorSettings.DEFAULT_RESOLUTION_CACHE_SIZE, ConfigurationInjectorSettings.DEFAULT_NEGATIVE_ENTRY_TTL, valueCache);
+		provider.addDelegate(new BenchmarkDataProvider(data));
+		final AccessorLayout layout = memoizingAccessors ? AccessorLayout.of(BenchmarkConfig.class) : null;
+		injector = new ConfigurationInjector(BenchmarkConfig.class, null, provider, layout, Dependent.class, false);
+		config = (BenchmarkConfig) injector.create(null);
+	}
+
+	@Benchmark
+	public String stringAccessor() {
+		return config.getName();
+	}
+
+	@Benchmark
+	public int intAccessor() {
+		return config.getPort();
+	}
+
+	@Benchmark
+	public boolean booleanAccessor() {
+		return config.isSecure();
+	}
+
+	@Benchmark
+	public Object createAccessor() {
+		return injector.create(null);
+	}
+
+}
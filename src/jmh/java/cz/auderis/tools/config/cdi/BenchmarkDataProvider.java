@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable data provider backed by a map. Unlike test providers, it performs
+ * no bookkeeping, so that benchmarks measure only the code under test.
+ */
+final class BenchmarkDataProvider implements ConfigurationDataProvider {
+
+	private final Map<String, Object> data;
+
+	BenchmarkDataProvider(Map<String, ?> data) {
+		this.data = new HashMap<String, Object>(data);
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		return data.containsKey(key);
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		return data.get(key);
+	}
+
+}
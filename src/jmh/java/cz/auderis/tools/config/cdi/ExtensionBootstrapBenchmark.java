@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jboss.weld.bootstrap.WeldBootstrap;
+import org.jboss.weld.bootstrap.api.Environments;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
+import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.jboss.weld.bootstrap.spi.Deployment;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.ejb.spi.EjbDescriptor;
+import org.jboss.weld.metadata.MetadataImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.AnnotatedType;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeBeanDiscovery;
+import javax.enterprise.inject.spi.Extension;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures bootstrap and shutdown of a Weld container with the configuration extension
+ * and a given number of beans, each having two configuration injection points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExtensionBootstrapBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	int beanCount;
+
+	@Benchmark
+	public void bootstrap() {
+		final WeldBootstrap bootstrap = new WeldBootstrap();
+		bootstrap.startContainer(Environments.SE, new BenchmarkDeployment(beanCount));
+		bootstrap.startInitialization();
+		bootstrap.deployBeans();
+		bootstrap.validateBeans();
+		bootstrap.endInitialization();
+		bootstrap.shutdown();
+	}
+
+	/**
+	 * Bean with configuration injection points; the extension registers it
+	 * repeatedly under distinct identifiers
+	 */
+	public static class ConfiguredBean {
+		@Inject
+		@ConfigurationObject
+		BenchmarkConfig config;
+
+		@Inject
+		@ConfigurationObject
+		BenchmarkConfig otherConfig;
+	}
+
+	public static class SourceProducer {
+		@Produces
+		@ConfigurationSource
+		ConfigurationDataProvider produceSource() {
+			final Map<String, String> data = new HashMap<String, String>();
+			data.put("name", "benchmark");
+			data.put("port", "8080");
+			data.put("secure", "true");
+			return new BenchmarkDataProvider(data);
+		}
+	}
+
+	public static class ConfiguredBeansExtension implements Extension {
+		private final int beanCount;
+
+		ConfiguredBeansExtension(int beanCount) {
+			this.beanCount = beanCount;
+		}
+
+		public void addConfiguredBeans(@Observes BeforeBeanDiscovery event, BeanManager beanManager) {
+			final AnnotatedType<ConfiguredBean> type = beanManager.createAnnotatedType(ConfiguredBean.class);
+			for (int i = 0; i < beanCount; ++i) {
+				event.addAnnotatedType(type, ConfiguredBean.class.getName() + '#' + i);
+			}
+		}
+	}
+
+	static final class BenchmarkDeployment implements Deployment, BeanDeploymentArchive {
+		private final ServiceRegistry services;
+		private final List<Metadata<Extension>> extensions;
+
+		BenchmarkDeployment(int beanCount) {
+			this.services = new SimpleServiceRegistry();
+			final Extension configExtension = new ConfigurationInjectorExtension();
+			final Extension beansExtension = new ConfiguredBeansExtension(beanCount);
+			this.extensions = Arrays.<Metadata<Extension>>asList(
+					new MetadataImpl<Extension>(configExtension, "benchmark"),
+					new MetadataImpl<Extension>(beansExtension, "benchmark"));
+		}
+
+		@Override
+		public Collection<BeanDeploymentArchive> getBeanDeploymentArchives() {
+			return Collections.<BeanDeploymentArchive>singletonList(this);
+		}
+
+		@Override
+		public BeanDeploymentArchive loadBeanDeploymentArchive(Class<?> beanClass) {
+			return this;
+		}
+
+		@Override
+		public Iterable<Metadata<Extension>> getExtensions() {
+			return extensions;
+		}
+
+		@Override
+		public Collection<String> getBeanClasses() {
+			return Collections.singletonList(SourceProducer.class.getName());
+		}
+
+		@Override
+		public BeansXml getBeansXml() {
+			return BeansXml.EMPTY_BEANS_XML;
+		}
+
+		@Override
+		public Collection<EjbDescriptor<?>> getEjbs() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ServiceRegistry getServices() {
+			return services;
+		}
+
+		@Override
+		public String getId() {
+			return "auderis-config-benchmark";
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link InjectorDataProvider#getRawObject(String)} for keys that are present
+ * in the last delegate of the chain and for keys that are missing, with and without
+ * negative caching, for various lengths of the delegate chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderLookupBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	@Param({ "1", "4", "16" })
+	int chainLength;
+
+	@Param({ "false", "true" })
+	boolean valueCache;
+
+	InjectorDataProvider provider;
+	InjectorDataProvider uncachedMissProvider;
+	String[] presentKeys;
+	String[] missingKeys;
+
+	@Setup
+	public void prepareProviders() {
+		provider = new InjectorDataProvider(2 * KEY_COUNT, ConfigurationInjectorSettings.DEFAULT_NEGATIVE_ENTRY_TTL, valueCache);
+		uncachedMissProvider = new InjectorDataProvider(2 * KEY_COUNT, 0L, valueCache);
+		presentKeys = new String[KEY_COUNT];
+		missingKeys = new String[KEY_COUNT];
+		for (int i = 0; i < chainLength; ++i) {
+			final Map<String, String> data = new HashMap<String, String>(2 * KEY_COUNT);
+			for (int k = 0; k < KEY_COUNT; ++k) {
+				final String key = "provider" + i + ".key" + k;
+				data.put(key, "value" + k);
+				// Only keys of the last (lowest priority) provider are looked up
+				presentKeys[k] = key;
+				missingKeys[k] = "missing.key" + k;
+			}
+			final BenchmarkDataProvider delegate = new BenchmarkDataProvider(data);
+			provider.addDelegate(delegate);
+			uncachedMissProvider.addDelegate(delegate);
+		}
+	}
+
+	@Benchmark
+	public Object presentKey(KeyCursor cursor) {
+		return provider.getRawObject(presentKeys[cursor.next()]);
+	}
+
+	@Benchmark
+	public Object missingKey(KeyCursor cursor) {
+		return provider.getRawObject(missingKeys[cursor.next()]);
+	}
+
+	@Benchmark
+	public Object missingKeyWithoutNegativeCache(KeyCursor cursor) {
+		return uncachedMissProvider.getRawObject(missingKeys[cursor.next()]);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Object contendedPresentKey(KeyCursor cursor) {
+		return provider.getRawObject(presentKeys[cursor.next()]);
+	}
+
+	/**
+	 * Per-thread position in the key arrays
+	 */
+	@State(Scope.Thread)
+	public static class KeyCursor {
+		private int position;
+
+		int next() {
+			position = (position + 1) & (KEY_COUNT - 1);
+			return position;
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationData;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Method table of a configuration interface, prepared once during container bootstrap.
+ * Every accessor method (i.e. a public method without parameters that returns a value)
+ * is assigned a slot index, so that accessors created from the layout can keep resolved
+ * values in a plain array.
+ * <p>
+ * The layout also records the configuration key of every slot of a method without annotations.
+ * Keys are not derived from method names here; every such method is invoked once on a standard
+ * configuration proxy backed by an empty provider, which records the key the proxy asks for,
+ * so the keys always follow the naming convention of the configuration library. A slot
+ * whose method asks for no key or for several keys has no known key, like a slot of an annotated
+ * method, whose annotations may alter the key, the default value or the conversion. Slots of methods
+ * without annotations that return {@code boolean}, {@code int}, {@code long} or {@code double}
+ * are marked with the primitive type, their values may be obtained from a {@link PrimitiveDataProvider}.
+ *
+ * @see MemoizingAccessorHandler
+ */
+final class AccessorLayout {
+
+	private final Class<?> type;
+	private final Map<Method, Integer> slotByMethod;
+	private final Method[] methodBySlot;
+	private final String[] keyBySlot;
+	private final Class<?>[] primitiveTypeBySlot;
+	private final List<String> keys;
+
+	private AccessorLayout(Class<?> type, Map<Method, Integer> slotByMethod, Method[] methodBySlot) {
+		this.type = type;
+		this.slotByMethod = slotByMethod;
+		this.methodBySlot = methodBySlot;
+		this.keyBySlot = new String[methodBySlot.length];
+		this.primitiveTypeBySlot = new Class<?>[methodBySlot.length];
+		final List<String> knownKeys = new ArrayList<String>(methodBySlot.length);
+		final KeyProbe probe = new KeyProbe();
+		final Object probeProxy = ConfigurationData.createConfigurationObject(probe, type);
+		for (int i = 0; i < methodBySlot.length; ++i) {
+			final Method method = methodBySlot[i];
+			if (!isPlainAccessor(method)) {
+				continue;
+			}
+			final String key = probe.getRequestedKey(probeProxy, method);
+			if (null == key) {
+				continue;
+			}
+			keyBySlot[i] = key;
+			primitiveTypeBySlot[i] = getDirectPrimitiveType(method);
+			knownKeys.add(key);
+		}
+		this.keys = Collections.unmodifiableList(knownKeys);
+	}
+
+	/**
+	 * Prepares a layout of the given configuration type.
+	 *
+	 * @param type configuration interface
+	 * @return layout, or {@code null} when the type cannot be handled by memoizing accessors
+	 */
+	static AccessorLayout of(Class<?> type) {
+		assert null != type;
+		if (!type.isInterface()) {
+			return null;
+		}
+		final Method[] methods = type.getMethods();
+		final Map<Method, Integer> slots = new HashMap<Method, Integer>(2 * methods.length);
+		final List<Method> accessors = new ArrayList<Method>(methods.length);
+		for (final Method method : methods) {
+			if (isAccessor(method)) {
+				slots.put(method, slots.size());
+				accessors.add(method);
+			}
+		}
+		final Method[] methodBySlot = accessors.toArray(new Method[accessors.size()]);
+		return new AccessorLayout(type, Collections.unmodifiableMap(slots), methodBySlot);
+	}
+
+	static boolean isAccessor(Method method) {
+		return (0 == method.getParameterTypes().length)
+				&& (void.class != method.getReturnType())
+				&& !Modifier.isStatic(method.getModifiers())
+				&& (Object.class != method.getDeclaringClass());
+	}
+
+	/**
+	 * Checks whether the accessor is free of annotations, which may define a different key,
+	 * a default value or a conversion.
+	 */
+	private static boolean isPlainAccessor(Method method) {
+		return 0 == method.getAnnotations().length;
+	}
+
+	private static Class<?> getDirectPrimitiveType(Method method) {
+		final Class<?> type = method.getReturnType();
+		if (!type.isPrimitive()) {
+			return null;
+		} else if ((boolean.class == type) || (int.class == type) || (long.class == type) || (double.class == type)) {
+			return type;
+		}
+		return null;
+	}
+
+	Class<?> getType() {
+		return type;
+	}
+
+	int getSlotCount() {
+		return slotByMethod.size();
+	}
+
+	/**
+	 * Returns the slot index of the given method, or -1 if the method is not an accessor.
+	 */
+	int getSlot(Method method) {
+		final Integer slot = slotByMethod.get(method);
+		return (null != slot) ? slot : -1;
+	}
+
+	Method getMethod(int slot) {
+		return methodBySlot[slot];
+	}
+
+	/**
+	 * Returns the configuration key of the given slot, or {@code null} if the key
+	 * may be defined by annotations of the method.
+	 */
+	String getKey(int slot) {
+		return keyBySlot[slot];
+	}
+
+	/**
+	 * Returns the primitive return type of the given slot, or {@code null} if the value
+	 * must be obtained by the standard configuration proxy.
+	 */
+	Class<?> getPrimitiveType(int slot) {
+		return primitiveTypeBySlot[slot];
+	}
+
+	/**
+	 * Returns configuration keys of all slots whose key is known.
+	 */
+	List<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * Checks whether keys of all slots are known.
+	 */
+	boolean hasAllKeys() {
+		return keys.size() == keyBySlot.length;
+	}
+
+	/**
+	 * Creates a configuration object that memoizes values obtained from a standard
+	 * configuration proxy until the data of the given provider are invalidated.
+	 *
+	 * @param dataProvider source of configuration data
+	 * @return configuration object implementing the type of this layout
+	 */
+	Object createAccessor(InjectorDataProvider dataProvider) {
+		final Object delegate = ConfigurationData.createConfigurationObject(dataProvider, type);
+		final MemoizingAccessorHandler handler = new MemoizingAccessorHandler(this, delegate, dataProvider);
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	@Override
+	public String toString() {
+		return "AccessorLayout[" + type.getName() + ", " + slotByMethod.size() + " slots]";
+	}
+
+
+	/**
+	 * Empty configuration data provider that records keys requested by a configuration proxy.
+	 */
+	private static final class KeyProbe implements ConfigurationDataProvider {
+		private final Set<String> requestedKeys = new LinkedHashSet<String>(4);
+
+		/**
+		 * Invokes the accessor method of the proxy and returns the only key it asked for,
+		 * or {@code null} if it asked for no key or for several keys.
+		 */
+		String getRequestedKey(Object proxy, Method method) {
+			requestedKeys.clear();
+			try {
+				method.invoke(proxy);
+			} catch (Exception e) {
+				// Missing values may be rejected, the requested keys are recorded already
+			}
+			return (1 == requestedKeys.size()) ? requestedKeys.iterator().next() : null;
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			requestedKeys.add(key);
+			return false;
+		}
+
+		@Override
+		public Object getRawObject(String key) {
+			requestedKeys.add(key);
+			return null;
+		}
+	}
+
+}
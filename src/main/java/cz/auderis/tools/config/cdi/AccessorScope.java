@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Dependent;
+import java.lang.annotation.Annotation;
+
+/**
+ * Lifecycle of injected configuration accessors, as selected by
+ * {@link ConfigurationInjectorSettings#ACCESSOR_SCOPE}.
+ */
+enum AccessorScope {
+
+	/**
+	 * New accessor is created for every injection point (default)
+	 */
+	DEPENDENT(Dependent.class, false),
+
+	/**
+	 * Single accessor is created for every combination of configuration type and qualifiers
+	 * and it is injected directly, without a client proxy
+	 */
+	SHARED(Dependent.class, true),
+
+	/**
+	 * Accessors are application scoped beans, accessed through client proxies
+	 */
+	APPLICATION(ApplicationScoped.class, false),
+
+	;
+
+	private final Class<? extends Annotation> cdiScope;
+	private final boolean shared;
+
+	AccessorScope(Class<? extends Annotation> cdiScope, boolean shared) {
+		this.cdiScope = cdiScope;
+		this.shared = shared;
+	}
+
+	Class<? extends Annotation> getCdiScope() {
+		return cdiScope;
+	}
+
+	boolean isShared() {
+		return shared;
+	}
+
+}
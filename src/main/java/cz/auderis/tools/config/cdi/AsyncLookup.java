@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous lookup of a configuration key. The lookup is completed exactly once,
+ * either with a value, with a failure or by cancellation; the optional callback is notified
+ * of values and failures.
+ */
+final class AsyncLookup implements Future<Object> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncLookup.class);
+
+	private static final int PENDING = 0;
+	private static final int COMPLETED = 1;
+	private static final int FAILED = 2;
+	private static final int CANCELLED = 3;
+
+	private final String key;
+	private final LookupCallback callback;
+	private final AtomicInteger state;
+	private final CountDownLatch doneSignal;
+	private volatile Object value;
+	private volatile Throwable failure;
+
+	AsyncLookup(String key, LookupCallback callback) {
+		assert null != key;
+		this.key = key;
+		this.callback = callback;
+		this.state = new AtomicInteger(PENDING);
+		this.doneSignal = new CountDownLatch(1);
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	boolean complete(Object result) {
+		if (!state.compareAndSet(PENDING, COMPLETED)) {
+			return false;
+		}
+		value = result;
+		doneSignal.countDown();
+		if (null != callback) {
+			try {
+				callback.lookupCompleted(key, result);
+			} catch (RuntimeException e) {
+				LOG.warn("Callback of lookup of configuration key " + key + " failed", e);
+			}
+		}
+		return true;
+	}
+
+	boolean fail(Throwable cause) {
+		assert null != cause;
+		if (!state.compareAndSet(PENDING, FAILED)) {
+			return false;
+		}
+		failure = cause;
+		doneSignal.countDown();
+		if (null != callback) {
+			try {
+				callback.lookupFailed(key, cause);
+			} catch (RuntimeException e) {
+				LOG.warn("Callback of lookup of configuration key " + key + " failed", e);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// Queries to configuration sources are never interrupted, they are only skipped
+		if (!state.compareAndSet(PENDING, CANCELLED)) {
+			return false;
+		}
+		doneSignal.countDown();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return CANCELLED == state.get();
+	}
+
+	@Override
+	public boolean isDone() {
+		return PENDING != state.get();
+	}
+
+	@Override
+	public Object get() throws InterruptedException, ExecutionException {
+		doneSignal.await();
+		return getResult();
+	}
+
+	@Override
+	public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!doneSignal.await(timeout, unit)) {
+			throw new TimeoutException("Lookup of configuration key " + key + " not completed");
+		}
+		return getResult();
+	}
+
+	private Object getResult() throws ExecutionException {
+		switch (state.get()) {
+			case COMPLETED:
+				return value;
+			case FAILED:
+				throw new ExecutionException(failure);
+			default:
+				throw new CancellationException();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncLookup[" + key + "]";
+	}
+
+}
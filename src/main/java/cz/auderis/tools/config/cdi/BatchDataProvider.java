@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Configuration data provider that is able to retrieve values of several keys at once,
+ * typically a provider backed by a database or a remote service, where every query
+ * means a round trip.
+ * <p>
+ * When a configuration object is first created (and during eager resolution, see
+ * {@link ConfigurationInjectorSettings#EAGER_RESOLUTION}), keys of all its accessor methods
+ * that are not yet resolved are fetched from such providers by a single call, instead of
+ * a {@code containsKey}/{@code getRawObject} pair per key. The providers are still queried
+ * in the order of their priorities, a batch contains only keys not found in providers
+ * with higher priorities.
+ */
+public interface BatchDataProvider extends ConfigurationDataProvider {
+
+	/**
+	 * Retrieves raw values of the given keys. Keys that are not contained in the provider
+	 * must be left out of the result; a key mapped to {@code null} is considered present.
+	 *
+	 * @param keys configuration keys, never {@code null}
+	 * @return map of found keys to their raw values, never {@code null}
+	 */
+	Map<String, Object> getRawObjects(Collection<String> keys);
+
+}
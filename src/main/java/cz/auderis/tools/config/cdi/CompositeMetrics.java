@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.List;
+
+/**
+ * Forwards measurements to several {@link ConfigurationMetrics} implementations
+ */
+final class CompositeMetrics implements ConfigurationMetrics {
+
+	private final ConfigurationMetrics[] targets;
+
+	private CompositeMetrics(ConfigurationMetrics[] targets) {
+		this.targets = targets;
+	}
+
+	/**
+	 * Returns a single instance that forwards measurements to all given targets.
+	 *
+	 * @param targets metrics implementations
+	 * @return combined metrics, or {@code null} if the list is empty
+	 */
+	static ConfigurationMetrics of(List<ConfigurationMetrics> targets) {
+		if (targets.isEmpty()) {
+			return null;
+		} else if (1 == targets.size()) {
+			return targets.get(0);
+		}
+		return new CompositeMetrics(targets.toArray(new ConfigurationMetrics[targets.size()]));
+	}
+
+	@Override
+	public void lookupCompleted(LookupOutcome outcome) {
+		for (final ConfigurationMetrics target : targets) {
+			target.lookupCompleted(outcome);
+		}
+	}
+
+	@Override
+	public void delegateQueried(ConfigurationDataProvider provider, long durationNanos) {
+		for (final ConfigurationMetrics target : targets) {
+			target.delegateQueried(provider, durationNanos);
+		}
+	}
+
+	@Override
+	public void accessorCreated(Class<?> configurationType) {
+		for (final ConfigurationMetrics target : targets) {
+			target.accessorCreated(configurationType);
+		}
+	}
+
+	@Override
+	public void bootstrapPhaseCompleted(String phase, long durationNanos) {
+		for (final ConfigurationMetrics target : targets) {
+			target.bootstrapPhaseCompleted(phase, durationNanos);
+		}
+	}
+
+}
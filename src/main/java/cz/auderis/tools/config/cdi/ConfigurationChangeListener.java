@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.Collection;
+
+/**
+ * Receiver of change notifications from an {@link ObservableDataProvider}.
+ * The extension registers a listener with every observable configuration source.
+ */
+public interface ConfigurationChangeListener {
+
+	/**
+	 * Reports that values of the given keys in the source have changed, or that keys
+	 * were added or removed. The method may be invoked from any thread.
+	 *
+	 * @param source configuration source whose data have changed
+	 * @param keys changed keys; an empty collection means that all data of the source may have changed
+	 */
+	void keysChanged(ConfigurationDataProvider source, Collection<String> keys);
+
+}
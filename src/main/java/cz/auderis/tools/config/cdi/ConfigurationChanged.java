@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * CDI event that tells the configuration extension that configuration data have changed
+ * and cached information should be discarded. The event either lists the affected keys,
+ * or (when created without keys) applies to the whole configuration.
+ * <pre>
+ * &#64;Inject Event&lt;ConfigurationChanged&gt; changeEvent;
+ * ...
+ * changeEvent.fire(new ConfigurationChanged("db.url", "db.user"));
+ * </pre>
+ */
+public final class ConfigurationChanged {
+
+	private final Set<String> keys;
+
+	/**
+	 * Creates an event that applies to all configuration keys.
+	 */
+	public ConfigurationChanged() {
+		this.keys = Collections.emptySet();
+	}
+
+	public ConfigurationChanged(String... keys) {
+		this(Arrays.asList(keys));
+	}
+
+	public ConfigurationChanged(Collection<String> keys) {
+		if (null == keys) {
+			throw new NullPointerException();
+		}
+		this.keys = Collections.unmodifiableSet(new LinkedHashSet<String>(keys));
+	}
+
+	/**
+	 * Returns changed keys; an empty set means that the whole configuration has changed.
+	 */
+	public Set<String> getKeys() {
+		return keys;
+	}
+
+	public boolean isGlobal() {
+		return keys.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigurationChanged[" + (keys.isEmpty() ? "*" : keys.toString()) + ']';
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+/**
+ * Optional extension of {@link ConfigurationDataProvider} for providers whose lookups are
+ * expensive (JNDI, database, files etc.). The CDI layer detects this interface and obtains
+ * a value with a single call to {@link #lookup(String)}, instead of calling
+ * {@link #containsKey(String)} followed by {@link #getRawObject(String)}.
+ */
+public interface ConfigurationDataLookup extends ConfigurationDataProvider {
+
+	/**
+	 * Marker value returned by {@link #lookup(String)} when the provider does not contain
+	 * the requested key. It is distinct from {@code null}, which is a legal raw value.
+	 */
+	Object ABSENT = new Object() {
+		@Override
+		public String toString() {
+			return "ABSENT";
+		}
+	};
+
+	/**
+	 * Returns the raw value associated with the given key, or {@link #ABSENT}
+	 * if the provider does not contain the key.
+	 *
+	 * @param key configuration key
+	 * @return raw value or {@link #ABSENT}
+	 */
+	Object lookup(String key);
+
+}
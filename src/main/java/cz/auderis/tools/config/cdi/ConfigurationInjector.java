@@ -44,15 +44,34 @@ class ConfigurationInjector implements Bean, Serializable {
 		return Collections.unmodifiableSet(result);
 	}
 
-	private final Class<?> targetType;
+	private final Type targetType;
+	private final Class<?> targetClass;
 	private final Set<Annotation> qualifiers;
 	private final InjectorDataProvider dataProvider;
+	private final transient AccessorLayout accessorLayout;
+	private final Class<? extends Annotation> scope;
+	private final boolean shared;
+	private transient volatile Object sharedAccessor;
+	private transient volatile long prefetchGeneration = -1L;
+
+	ConfigurationInjector(Type type, Set<Annotation> qualifiers, InjectorDataProvider cdiDataProvider) {
+		this(type, qualifiers, cdiDataProvider, null, Dependent.class, false);
+	}
 
-	ConfigurationInjector(Class<?> type, Set<Annotation> qualifiers, InjectorDataProvider cdiDataProvider) {
+	ConfigurationInjector(Type type, Set<Annotation> qualifiers, InjectorDataProvider cdiDataProvider,
+	                      AccessorLayout layout, Class<? extends Annotation> scope, boolean shared) {
 		assert null != type;
 		assert null != cdiDataProvider;
+		assert null != scope;
+		assert !shared || Dependent.class.equals(scope);
 		this.targetType = type;
+		this.targetClass = ConfigurationObjectKey.getRawType(type);
+		assert null != targetClass : "Unsupported configuration type " + type;
+		assert (null == layout) || targetClass.equals(layout.getType());
 		this.dataProvider = cdiDataProvider;
+		this.accessorLayout = layout;
+		this.scope = scope;
+		this.shared = shared;
 		if (qualifiers == null || qualifiers.isEmpty()) {
 			this.qualifiers = DEFAULT_QUALIFIERS;
 		} else {
@@ -73,7 +92,7 @@ class ConfigurationInjector implements Bean, Serializable {
 
 	@Override
 	public Class<?> getScope() {
-		return Dependent.class;
+		return scope;
 	}
 
 	@Override
@@ -88,7 +107,7 @@ class ConfigurationInjector implements Bean, Serializable {
 
 	@Override
 	public Class getBeanClass() {
-		return targetType;
+		return targetClass;
 	}
 
 	@Override
@@ -109,7 +128,19 @@ class ConfigurationInjector implements Bean, Serializable {
 	/**
 	 * Creates a concrete configuration accessor (proxy defined by
 	 * {@link cz.auderis.tools.config.ConfigurationDataAccessProxyHandler})
-	 * that is needed at the given injection point.
+	 * that is needed at the given injection point. If an accessor layout was prepared
+	 * for the target type, the proxy is wrapped by a memoizing accessor
+	 * that memoizes the resolved values.
+	 * <p>
+	 * Accessors are stateless, so when the injector is shared, a single instance
+	 * is created and then returned for all injection points.
+	 * <p>
+	 * A parameterized configuration type is served by an accessor of its raw
+	 * interface, type arguments only take part in bean resolution.
+	 * <p>
+	 * If some configuration sources implement {@link BatchDataProvider}, keys of all accessor
+	 * methods are resolved by batch queries before the first accessor is created (and again
+	 * after the resolved information has been invalidated).
 	 *
 	 *
 	 * @param creationalContext
@@ -117,20 +148,68 @@ class ConfigurationInjector implements Bean, Serializable {
 	 */
 	@Override
 	public Object create(CreationalContext creationalContext) {
-		final Object cfgAccessor = ConfigurationData.createConfigurationObject(dataProvider, targetType);
+		if (!shared) {
+			return createAccessor();
+		}
+		Object accessor = sharedAccessor;
+		if (null == accessor) {
+			// Benign race, concurrently created accessors are equivalent
+			accessor = createAccessor();
+			sharedAccessor = accessor;
+		}
+		return accessor;
+	}
+
+	private Object createAccessor() {
+		if (dataProvider.hasBatchDelegates()) {
+			prefetchKeys();
+		}
+		final ConfigurationMetrics metrics = dataProvider.getMetrics();
+		if (null != metrics) {
+			metrics.accessorCreated(targetClass);
+		}
+		if (null != accessorLayout) {
+			return accessorLayout.createAccessor(dataProvider);
+		}
+		final Object cfgAccessor = ConfigurationData.createConfigurationObject(dataProvider, targetClass);
 		return cfgAccessor;
 	}
 
+	private void prefetchKeys() {
+		final long currentGeneration = dataProvider.getGeneration();
+		if (currentGeneration == prefetchGeneration) {
+			return;
+		}
+		// Benign race, keys resolved by a concurrent prefetch are skipped
+		prefetchGeneration = currentGeneration;
+		final AccessorLayout layout = (null != accessorLayout) ? accessorLayout : AccessorLayout.of(targetClass);
+		if (null != layout) {
+			try {
+				dataProvider.prefetch(layout.getKeys());
+			} catch (RuntimeException e) {
+				// Keys are then resolved one by one when used, which reports the failure
+				prefetchGeneration = -1L;
+			}
+		}
+	}
+
 	@Override
 	public void destroy(Object instance, CreationalContext creationalContext) {
+		// Shared accessor is not owned by the injection point, it is simply left in place
 		creationalContext.release();
 	}
 
 	@Override
 	public String toString() {
 		final StringBuilder str = new StringBuilder(32);
-		str.append("CfgInjector[class=");
+		str.append("CfgInjector[type=");
 		str.append(targetType);
+		if (!Dependent.class.equals(scope)) {
+			str.append(", scope=@");
+			str.append(scope.getSimpleName());
+		} else if (shared) {
+			str.append(", shared");
+		}
 		if (!qualifiers.isEmpty()) {
 			str.append(", qualifiers=");
 			str.append(qualifiers);
@@ -23,39 +23,216 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.event.Observes;
-import javax.enterprise.inject.Any;
 import javax.enterprise.inject.InjectionException;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Annotated;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.BeforeBeanDiscovery;
+import javax.enterprise.inject.spi.BeforeShutdown;
+import javax.enterprise.inject.spi.DeploymentException;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.enterprise.inject.spi.InjectionTarget;
+import javax.enterprise.inject.spi.ProcessAnnotatedType;
 import javax.enterprise.inject.spi.ProcessInjectionTarget;
-import javax.enterprise.util.AnnotationLiteral;
+import javax.enterprise.inject.spi.WithAnnotations;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class ConfigurationInjectorExtension implements Extension {
 
 	final Logger LOG;
+	// Containers may deliver bootstrap events from several threads, the set of injections
+	// and counters of injection points and targets are guarded by the lock of the set
 	int detectedInjectionPoints;
 	final Set<ConfigurationObjectKey> cfgObjectInjections;
 	final InjectorDataProvider cdiDataProvider;
+	final boolean memoizingAccessors;
+	final AccessorScope accessorScope;
+	final EagerResolution eagerResolution;
+	final int eagerResolutionThreads;
+	final long reloadInterval;
+	final ProviderFileWatcher fileWatcher;
+	final List<ConfigurationDataProvider> runtimeSources;
+	final ConfigurationStatistics statistics;
+	final ConfigurationMetrics metrics;
+	final int asyncThreads;
+	final int resolutionCacheSize;
+	final int tenantLimit;
+	final int tenantCacheSize;
+	final ConfigurationSourceCreator sourceCreator;
+	private volatile Executor asyncExecutor;
+	private ExecutorService defaultAsyncExecutor;
+	private ExecutorService guardExecutor;
+	private final GuardedDataProvider.StateListener sourceStateListener;
+	private final ConfigurationChangeListener sourceChangeListener;
+	private final List<ObservableDataProvider> observedSources;
+	// Listener registrations are applied in order, but outside of any lock
+	private final Queue<ListenerChange> listenerChanges;
+	private final Lock listenerChangeLock;
+	private volatile List<ConfigurationObjectKey> registeredObjects;
+	private volatile Map<String, List<ConfigurationObjectKey>> objectsByConfigKey;
+	private volatile boolean deploymentValidated;
+	final InjectionTargetFilter targetFilter;
+	final InjectionPointIndex injectionIndex;
+	final Map<Class<? extends Annotation>, Boolean> qualifierTypes;
+	int scannedTargets;
+	int skippedTargets;
+	int indexedTargets;
+	long injectionPointScanNanos;
+	ObjectName statisticsName;
+	volatile BeanManager providerBeanManager;
+	SourceGeneration sourceGeneration;
+	final ReadWriteLock sourceSwapLock;
+	// Guards creation and replacement of sources; unlike the lock of the extension,
+	// it may be held while calling into sources
+	final Lock sourceUpdateLock;
 
 	public ConfigurationInjectorExtension() {
-		this.cfgObjectInjections = new HashSet<ConfigurationObjectKey>(32);
-		this.cdiDataProvider = new InjectorDataProvider();
 		this.LOG = LoggerFactory.getLogger(ConfigurationInjectorExtension.class);
+		this.injectionIndex = loadInjectionIndex();
+		final int expectedInjections = Math.max(32, 2 * injectionIndex.getInjectionCount());
+		this.cfgObjectInjections = new HashSet<ConfigurationObjectKey>(expectedInjections);
+		this.runtimeSources = new CopyOnWriteArrayList<ConfigurationDataProvider>();
+		this.targetFilter = new InjectionTargetFilter(
+				ConfigurationInjectorSettings.getPackages(ConfigurationInjectorSettings.SCAN_INCLUDE),
+				ConfigurationInjectorSettings.getPackages(ConfigurationInjectorSettings.SCAN_EXCLUDE));
+		this.qualifierTypes = new ConcurrentHashMap<Class<? extends Annotation>, Boolean>(16);
+		final int cacheSize = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.RESOLUTION_CACHE_SIZE, ConfigurationInjectorSettings.DEFAULT_RESOLUTION_CACHE_SIZE);
+		final long negativeEntryTtl = ConfigurationInjectorSettings.getLong(
+				ConfigurationInjectorSettings.NEGATIVE_ENTRY_TTL, ConfigurationInjectorSettings.DEFAULT_NEGATIVE_ENTRY_TTL);
+		final boolean cacheValues = ConfigurationInjectorSettings.getBoolean(ConfigurationInjectorSettings.VALUE_CACHE, false);
+		this.resolutionCacheSize = cacheSize;
+		final List<ConfigurationMetrics> metricsTargets = new ArrayList<ConfigurationMetrics>();
+		if (ConfigurationInjectorSettings.getBoolean(ConfigurationInjectorSettings.METRICS, false)) {
+			this.statistics = new ConfigurationStatistics();
+			metricsTargets.add(statistics);
+		} else {
+			this.statistics = null;
+		}
+		metricsTargets.addAll(loadMetricsServices());
+		this.metrics = CompositeMetrics.of(metricsTargets);
+		final int keyIndexLimit = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.KEY_INDEX_LIMIT, ConfigurationInjectorSettings.DEFAULT_KEY_INDEX_LIMIT);
+		this.cdiDataProvider = new InjectorDataProvider(cacheSize, negativeEntryTtl, cacheValues, keyIndexLimit, metrics);
+		this.memoizingAccessors = ConfigurationInjectorSettings.getBoolean(ConfigurationInjectorSettings.MEMOIZING_ACCESSORS, false);
+		this.accessorScope = ConfigurationInjectorSettings.getEnum(
+				ConfigurationInjectorSettings.ACCESSOR_SCOPE, AccessorScope.class, AccessorScope.DEPENDENT);
+		this.eagerResolution = ConfigurationInjectorSettings.getEnum(
+				ConfigurationInjectorSettings.EAGER_RESOLUTION, EagerResolution.class, EagerResolution.OFF);
+		this.eagerResolutionThreads = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.EAGER_RESOLUTION_THREADS, Runtime.getRuntime().availableProcessors());
+		this.asyncThreads = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.ASYNC_THREADS, ConfigurationInjectorSettings.DEFAULT_ASYNC_THREADS);
+		this.reloadInterval = ConfigurationInjectorSettings.getLong(
+				ConfigurationInjectorSettings.RELOAD_INTERVAL, ConfigurationInjectorSettings.DEFAULT_RELOAD_INTERVAL);
+		this.tenantLimit = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.TENANT_LIMIT, ConfigurationInjectorSettings.DEFAULT_TENANT_LIMIT);
+		this.tenantCacheSize = ConfigurationInjectorSettings.getInt(
+				ConfigurationInjectorSettings.TENANT_CACHE_SIZE, ConfigurationInjectorSettings.DEFAULT_TENANT_CACHE_SIZE);
+		this.sourceCreator = new ConfigurationSourceCreator(
+				ConfigurationInjectorSettings.getInt(ConfigurationInjectorSettings.SOURCE_CREATION_THREADS, 1));
+		this.sourceStateListener = new GuardedDataProvider.StateListener() {
+			@Override
+			public void stateChanged(GuardedDataProvider guard) {
+				// Answers given while the source was skipped are not cached, only values
+				// of keys owned by the source may be outdated
+				cdiDataProvider.invalidateOwner(guard);
+			}
+		};
+		this.sourceChangeListener = new ConfigurationChangeListener() {
+			@Override
+			public void keysChanged(ConfigurationDataProvider source, Collection<String> keys) {
+				sourceChanged(source, keys);
+			}
+		};
+		this.observedSources = new CopyOnWriteArrayList<ObservableDataProvider>();
+		this.listenerChanges = new ConcurrentLinkedQueue<ListenerChange>();
+		this.listenerChangeLock = new ReentrantLock();
+		this.sourceSwapLock = new ReentrantReadWriteLock();
+		this.sourceUpdateLock = new ReentrantLock();
+		this.registeredObjects = Collections.emptyList();
+		this.fileWatcher = new ProviderFileWatcher(new Runnable() {
+			@Override
+			public void run() {
+				reloadProviders();
+			}
+		});
+	}
+
+	private InjectionPointIndex loadInjectionIndex() {
+		if (!ConfigurationInjectorSettings.getBoolean(ConfigurationInjectorSettings.INJECTION_INDEX, true)) {
+			return new InjectionPointIndex();
+		}
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (null == loader) {
+			loader = ConfigurationInjectorExtension.class.getClassLoader();
+		}
+		try {
+			final InjectionPointIndex index = InjectionPointIndex.load(loader);
+			if (!index.isEmpty()) {
+				LOG.debug("Loaded index of " + index.getInjectionCount() + " configuration injection points");
+			}
+			return index;
+		} catch (IOException e) {
+			LOG.warn("Cannot load configuration injection point index, injection points will be scanned", e);
+			return new InjectionPointIndex();
+		}
+	}
+
+	private List<ConfigurationMetrics> loadMetricsServices() {
+		final List<ConfigurationMetrics> services = new ArrayList<ConfigurationMetrics>(2);
+		try {
+			for (final ConfigurationMetrics service : ServiceLoader.load(ConfigurationMetrics.class)) {
+				services.add(service);
+				LOG.debug("Configuration metrics reported to " + service.getClass().getName());
+			}
+		} catch (ServiceConfigurationError e) {
+			LOG.error("Cannot load configuration metrics implementation", e);
+		}
+		return services;
 	}
 
 	/**
@@ -73,127 +250,915 @@ public class ConfigurationInjectorExtension implements Extension {
 		event.addQualifier(ConfigurationObject.class);
 	}
 
+	/**
+	 * Records classes that use {@code ConfigurationObject} annotations. The container delivers
+	 * only such types to this observer, so that injection targets of other classes can be skipped.
+	 *
+	 * @param event CDI event
+	 * @param <X> Class of the annotated type
+	 */
+	public <X> void processAnnotatedType(@Observes @WithAnnotations(ConfigurationObject.class) ProcessAnnotatedType<X> event) {
+		final Class<X> type = event.getAnnotatedType().getJavaClass();
+		if (!targetFilter.addCandidate(type)) {
+			LOG.debug("Class " + type.getName() + " excluded from scanning for configuration injection points");
+		}
+	}
+
+	/**
+	 * Registers indexed injection points of the given class and of its superclasses. The index
+	 * records injection points under their declaring classes, so when a superclass is not indexed
+	 * and declares configuration injection points, the class has to be scanned instead.
+	 */
+	private boolean registerIndexedInjectionPoints(Class<?> type) {
+		if (!injectionIndex.containsClass(type.getName()) || !targetFilter.isPackageAccepted(type.getName())) {
+			return false;
+		}
+		final List<ConfigurationObjectKey> injections = new ArrayList<ConfigurationObjectKey>();
+		for (Class<?> declaringClass = type; (null != declaringClass) && (Object.class != declaringClass);
+		     declaringClass = declaringClass.getSuperclass()) {
+			if (!injectionIndex.containsClass(declaringClass.getName())) {
+				if (hasConfigurationAnnotations(declaringClass)) {
+					LOG.debug("Superclass " + declaringClass.getName() + " of " + type.getName() + " is not indexed, class will be scanned");
+					return false;
+				}
+				continue;
+			}
+			try {
+				injections.addAll(injectionIndex.getInjections(declaringClass));
+			} catch (ClassNotFoundException e) {
+				LOG.warn("Cannot use indexed injection points of " + declaringClass.getName() + ", class " + type.getName() + " will be scanned", e);
+				return false;
+			}
+		}
+		synchronized (cfgObjectInjections) {
+			cfgObjectInjections.addAll(injections);
+			detectedInjectionPoints += injections.size();
+			++indexedTargets;
+		}
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Registered indexed configuration injection points of " + type.getName() + ": " + injections);
+		}
+		return true;
+	}
+
+	private static boolean hasConfigurationAnnotations(Class<?> type) {
+		try {
+			for (final Field field : type.getDeclaredFields()) {
+				if (field.isAnnotationPresent(ConfigurationObject.class)) {
+					return true;
+				}
+			}
+			for (final Method method : type.getDeclaredMethods()) {
+				if (hasConfigurationAnnotations(method.getParameterAnnotations())) {
+					return true;
+				}
+			}
+			for (final Constructor<?> constructor : type.getDeclaredConstructors()) {
+				if (hasConfigurationAnnotations(constructor.getParameterAnnotations())) {
+					return true;
+				}
+			}
+			return false;
+		} catch (LinkageError e) {
+			// Members cannot be examined, let the container report injection points
+			return true;
+		}
+	}
+
+	private static boolean hasConfigurationAnnotations(Annotation[][] parameterAnnotations) {
+		for (final Annotation[] annotations : parameterAnnotations) {
+			for (final Annotation annotation : annotations) {
+				if (annotation instanceof ConfigurationObject) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Records occurrences of {@code ConfigurationObject} annotations during CDI initialization.
+	 * Injection points of classes found in the build-time index are registered directly;
+	 * this is done only here, so that classes vetoed by other extensions are not registered.
 	 *
 	 * @param event CDI event
 	 * @param <X> Class of the CDI bean that is the subject of this event (<i>not used</i>)
 	 */
 	public <X> void processInjectionTarget(@Observes ProcessInjectionTarget<X> event, BeanManager beanManager) {
+		final long startTime = System.nanoTime();
+		final Class<X> type = event.getAnnotatedType().getJavaClass();
+		if (registerIndexedInjectionPoints(type)) {
+			recordTargetScan(startTime, 0, 0);
+			return;
+		}
+		if (!targetFilter.isCandidate(type)) {
+			recordTargetScan(startTime, 0, 1);
+			return;
+		}
 		final boolean logInjectionPoints = LOG.isTraceEnabled();
 		final InjectionTarget<X> injectionTarget = event.getInjectionTarget();
 		final Set<InjectionPoint> injectionPoints = injectionTarget.getInjectionPoints();
 		for (final InjectionPoint injectionPoint : injectionPoints) {
 			final Annotated annotatedPoint = injectionPoint.getAnnotated();
 			if (annotatedPoint.isAnnotationPresent(ConfigurationObject.class)) {
-				registerCfgObjectInjectionPoint(injectionPoint, beanManager);
+				if (!registerCfgObjectInjectionPoint(injectionPoint, beanManager, event)) {
+					continue;
+				}
 				if (logInjectionPoints) {
 					LOG.trace("Registered " + injectionPoint + " as configuration injection point");
 				}
 			}
 		}
+		recordTargetScan(startTime, 1, 0);
+	}
+
+	/**
+	 * Adds time spent with an injection target and the number of scanned and skipped targets
+	 * to the statistics of injection point scanning.
+	 */
+	private void recordTargetScan(long startTime, int scanned, int skipped) {
+		final long duration = System.nanoTime() - startTime;
+		synchronized (cfgObjectInjections) {
+			scannedTargets += scanned;
+			skippedTargets += skipped;
+			injectionPointScanNanos += duration;
+		}
 	}
 
-	private void registerCfgObjectInjectionPoint(InjectionPoint injectionPoint, BeanManager beanManager) {
-		final Class<?> pointType = (Class<?>) injectionPoint.getAnnotated().getBaseType();
+	private boolean registerCfgObjectInjectionPoint(InjectionPoint injectionPoint, BeanManager beanManager,
+	                                                ProcessInjectionTarget<?> event) {
+		// Instance<T> and Provider<T> are supplied by the container, only T needs a bean
+		final Type pointType = ConfigurationObjectKey.getRequestedType(injectionPoint.getType());
+		if (null == ConfigurationObjectKey.getRawType(pointType)) {
+			final String msg = "Unsupported configuration object type " + pointType + " at " + injectionPoint;
+			LOG.error(msg);
+			event.addDefinitionError(new DeploymentException(msg));
+			return false;
+		}
 		final Set<Annotation> origAnnotations = injectionPoint.getAnnotated().getAnnotations();
-		final Set<Annotation> pointAnnotations = new HashSet<Annotation>(origAnnotations);
-		// Remove all non-qualifier annotations
-		for (Iterator<Annotation> annotationIterator = pointAnnotations.iterator(); annotationIterator.hasNext(); ) {
-			final Annotation annotation = annotationIterator.next();
-			final Class<? extends Annotation> annotationType = annotation.annotationType();
-			if (!beanManager.isQualifier(annotationType)) {
-				annotationIterator.remove();
+		// Keep qualifier annotations only
+		final Set<Annotation> pointAnnotations = new HashSet<Annotation>(origAnnotations.size());
+		for (final Annotation annotation : origAnnotations) {
+			if (isQualifier(annotation.annotationType(), beanManager)) {
+				pointAnnotations.add(annotation);
 			}
 		}
 		final ConfigurationObjectKey injection = new ConfigurationObjectKey(pointType, pointAnnotations);
-		cfgObjectInjections.add(injection);
-		++detectedInjectionPoints;
+		synchronized (cfgObjectInjections) {
+			cfgObjectInjections.add(injection);
+			++detectedInjectionPoints;
+		}
+		return true;
+	}
+
+	private boolean isQualifier(Class<? extends Annotation> annotationType, BeanManager beanManager) {
+		Boolean qualifier = qualifierTypes.get(annotationType);
+		if (null == qualifier) {
+			qualifier = beanManager.isQualifier(annotationType);
+			qualifierTypes.put(annotationType, qualifier);
+		}
+		return qualifier;
 	}
 
 	public void afterBeanDiscovery(@Observes AfterBeanDiscovery event, BeanManager manager) {
+		if (LOG.isDebugEnabled()) {
+			final long scanMillis = TimeUnit.NANOSECONDS.toMillis(injectionPointScanNanos);
+			LOG.debug("Scanned " + scannedTargets + " injection targets of " + targetFilter.getCandidateCount()
+					+ " candidate classes, skipped " + skippedTargets + " targets, scanning took " + scanMillis + " ms; "
+					+ indexedTargets + " classes were found in build-time index");
+		}
+		targetFilter.clear();
+		qualifierTypes.clear();
+		synchronized (cfgObjectInjections) {
+			scannedTargets = 0;
+			skippedTargets = 0;
+			indexedTargets = 0;
+		}
 		if (cfgObjectInjections.isEmpty()) {
 			LOG.debug("No configuration injection points detected");
 			return;
 		}
-		final List<ConfigurationDataProvider> cfgDataProviders = getAvailableProviders(manager);
+		reportBootstrapPhase("injectionPointScan", injectionPointScanNanos);
+		long phaseStart = System.nanoTime();
+		final List<CreationalContext<?>> contexts = new ArrayList<CreationalContext<?>>();
+		final List<ConfigurationDataProvider> cfgDataProviders = getAvailableProviders(manager, contexts);
+		reportBootstrapPhase("providerCreation", System.nanoTime() - phaseStart);
+		phaseStart = System.nanoTime();
 		LOG.trace("Detected " + cfgDataProviders.size() + " configuration data providers");
 		if (cfgDataProviders.isEmpty()) {
 			final int injectCount = cfgObjectInjections.size();
 			LOG.error("Cannot inject " + injectCount + " cfg injection points, no data providers detected");
 			throw new InjectionException("Cannot create configuration data provider, no @ConfigurationSource found");
 		}
-		for (final ConfigurationDataProvider provider : cfgDataProviders) {
-			cdiDataProvider.addDelegate(provider);
+		sourceUpdateLock.lock();
+		try {
+			// Delegates are set at once, so that the key index is built only once
+			swapSources(cfgDataProviders, new SourceGeneration(contexts));
+			this.providerBeanManager = manager;
+			observeSources(cfgDataProviders);
+		} finally {
+			sourceUpdateLock.unlock();
 		}
+		applyListenerChanges();
+		fileWatcher.watch(getSourceFiles(cfgDataProviders));
 		LOG.trace("Preparing beans for " + cfgObjectInjections.size() + " requested configuration data types");
+		final Map<Class<?>, AccessorLayout> layouts = new HashMap<Class<?>, AccessorLayout>(cfgObjectInjections.size());
+		final boolean prepareLayouts = memoizingAccessors || (EagerResolution.OFF != eagerResolution);
 		for (ConfigurationObjectKey key : cfgObjectInjections) {
-			final Class<?> cfgBeanType = key.getType();
+			final Type cfgBeanType = key.getType();
+			final Class<?> cfgBeanClass = key.getRawType();
 			final Set<Annotation> qualifiers = key.getQualifiers();
-			final ConfigurationInjector bean = new ConfigurationInjector(cfgBeanType, qualifiers, cdiDataProvider);
+			final AccessorLayout layout = prepareLayouts ? getAccessorLayout(cfgBeanClass, layouts) : null;
+			final AccessorLayout accessorLayout = memoizingAccessors ? layout : null;
+			final Class<? extends Annotation> declaredScope = getDeclaredScope(cfgBeanClass, manager);
+			final ConfigurationInjector bean;
+			if (null != declaredScope) {
+				bean = new ConfigurationInjector(cfgBeanType, qualifiers, cdiDataProvider, accessorLayout, declaredScope, false);
+			} else {
+				final Class<? extends Annotation> scope = accessorScope.getCdiScope();
+				bean = new ConfigurationInjector(cfgBeanType, qualifiers, cdiDataProvider, accessorLayout, scope, accessorScope.isShared());
+			}
 			event.addBean(bean);
 		}
+		reportBootstrapPhase("beanRegistration", System.nanoTime() - phaseStart);
+		if (EagerResolution.OFF != eagerResolution) {
+			phaseStart = System.nanoTime();
+			resolveEagerly(layouts.values(), event);
+			reportBootstrapPhase("eagerResolution", System.nanoTime() - phaseStart);
+		}
 		LOG.debug("Prepared " + cfgObjectInjections.size() + " beans for "
 				+ detectedInjectionPoints + " configuration injection points");
-		detectedInjectionPoints = 0;
-		cfgObjectInjections.clear();
+		registeredObjects = new ArrayList<ConfigurationObjectKey>(cfgObjectInjections);
+		objectsByConfigKey = null;
+		synchronized (cfgObjectInjections) {
+			detectedInjectionPoints = 0;
+			injectionPointScanNanos = 0L;
+			cfgObjectInjections.clear();
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private List<ConfigurationDataProvider> getAvailableProviders(BeanManager beanManager) {
-		assert beanManager.isQualifier(ConfigurationSource.class);
-		// Find all beans and producers that provide ConfigurationDataProvider instances
-		final Annotation anyAnnotation = new AnnotationLiteral<Any>() { };
-		final Set<Bean<?>> cfgBeanCandidates = beanManager.getBeans(ConfigurationDataProvider.class, anyAnnotation);
-		if (cfgBeanCandidates.isEmpty()) {
-			return Collections.emptyList();
+	/**
+	 * Starts watching files of {@link FileBackedDataProvider} configuration sources,
+	 * once the deployment is complete.
+	 *
+	 * @param event CDI event
+	 */
+	public void afterDeploymentValidation(@Observes AfterDeploymentValidation event) {
+		if ((reloadInterval > 0L) && fileWatcher.isWatching()) {
+			fileWatcher.start(reloadInterval);
+		}
+		if (null != statistics) {
+			registerStatistics();
+		}
+		deploymentValidated = true;
+	}
+
+	/**
+	 * Stops watching configuration files.
+	 *
+	 * @param event CDI event
+	 */
+	public void beforeShutdown(@Observes BeforeShutdown event) {
+		deploymentValidated = false;
+		fileWatcher.stop();
+		unregisterStatistics();
+		sourceUpdateLock.lock();
+		try {
+			observeSources(Collections.<ConfigurationDataProvider>emptyList());
+		} finally {
+			sourceUpdateLock.unlock();
 		}
-		// Filter out beans and candidates that do not have qualifier @ConfigurationSource
-		final int candidateCount = cfgBeanCandidates.size();
-		final List<Bean<ConfigurationDataProvider>> candidateList = new ArrayList<Bean<ConfigurationDataProvider>>(candidateCount);
-		for (final Bean<?> candidateBean : cfgBeanCandidates) {
-			if (hasQualifierType(candidateBean, ConfigurationSource.class)) {
-				assert hasBeanType(candidateBean, ConfigurationDataProvider.class);
-				candidateList.add((Bean<ConfigurationDataProvider>) candidateBean);
+		applyListenerChanges();
+		synchronized (this) {
+			if (null != defaultAsyncExecutor) {
+				defaultAsyncExecutor.shutdown();
+				defaultAsyncExecutor = null;
+			}
+			if (null != guardExecutor) {
+				guardExecutor.shutdownNow();
+				guardExecutor = null;
 			}
 		}
-		if (candidateList.isEmpty()) {
-			return Collections.emptyList();
+	}
+
+	/**
+	 * Returns statistics of the configuration layer.
+	 *
+	 * @return statistics, or {@code null} if {@link ConfigurationInjectorSettings#METRICS} is not enabled
+	 */
+	public ConfigurationStatisticsMBean getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns report of the most recent creation of configuration sources, i.e. at bootstrap
+	 * or by the last reload.
+	 *
+	 * @return report, or {@code null} if no configuration sources were created yet
+	 */
+	public SourceCreationReport getSourceCreationReport() {
+		return sourceCreator.getLastReport();
+	}
+
+	private void reportBootstrapPhase(String phase, long durationNanos) {
+		if (null != metrics) {
+			metrics.bootstrapPhaseCompleted(phase, durationNanos);
+		}
+	}
+
+	private synchronized void registerStatistics() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final String id = Integer.toHexString(System.identityHashCode(this));
+			final ObjectName name = new ObjectName("cz.auderis.config:type=ConfigurationStatistics,name=" + id);
+			server.registerMBean(statistics, name);
+			statisticsName = name;
+			LOG.debug("Configuration statistics registered as " + name);
+		} catch (JMException e) {
+			LOG.warn("Cannot register configuration statistics MBean", e);
+		}
+	}
+
+	private synchronized void unregisterStatistics() {
+		if (null == statisticsName) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+		} catch (JMException e) {
+			LOG.warn("Cannot unregister configuration statistics MBean", e);
+		}
+		statisticsName = null;
+	}
+
+	/**
+	 * Creates new instances of all configuration sources and atomically replaces
+	 * the current ones. Configuration objects that are already injected switch
+	 * to the new sources without a restart; threads that are just reading
+	 * a value finish the read with the previous sources. The previous sources
+	 * are destroyed once all snapshots that use them are closed (see {@link #openSnapshot()}).
+	 * <p>
+	 * If the new sources cannot be created, the current ones remain in use.
+	 *
+	 * @throws IllegalStateException if the configuration sources were not initialized yet
+	 */
+	public void reloadProviders() {
+		final BeanManager beanManager = providerBeanManager;
+		if (null == beanManager) {
+			throw new IllegalStateException("Configuration sources are not initialized");
+		}
+		sourceUpdateLock.lock();
+		try {
+			final List<CreationalContext<?>> newContexts = new ArrayList<CreationalContext<?>>();
+			final List<ConfigurationDataProvider> newProviders;
+			try {
+				newProviders = getAvailableProviders(beanManager, newContexts);
+			} catch (RuntimeException e) {
+				SourceGeneration.release(newContexts);
+				throw e;
+			}
+			if (newProviders.isEmpty()) {
+				SourceGeneration.release(newContexts);
+				LOG.error("Configuration sources not reloaded, no @ConfigurationSource found");
+				return;
+			}
+			final List<ConfigurationDataProvider> allProviders = new ArrayList<ConfigurationDataProvider>(newProviders);
+			allProviders.addAll(runtimeSources);
+			final SourceGeneration oldGeneration = swapSources(allProviders, new SourceGeneration(newContexts));
+			observeSources(allProviders);
+			oldGeneration.retire();
+			fileWatcher.watch(getSourceFiles(newProviders));
+			LOG.info("Reloaded " + newProviders.size() + " configuration sources");
+		} finally {
+			sourceUpdateLock.unlock();
+		}
+		applyListenerChanges();
+	}
+
+	/**
+	 * Replaces delegates of the data provider and the generation of sources they come from,
+	 * so that a snapshot never combines delegates of one generation with another generation.
+	 *
+	 * @return previous generation, or {@code null} if there is none
+	 */
+	private SourceGeneration swapSources(List<ConfigurationDataProvider> providers, SourceGeneration newGeneration) {
+		final Lock lock = sourceSwapLock.writeLock();
+		lock.lock();
+		try {
+			cdiDataProvider.replaceDelegates(providers);
+			final SourceGeneration oldGeneration = sourceGeneration;
+			sourceGeneration = newGeneration;
+			return oldGeneration;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Opens a snapshot of configuration data for a unit of work. Configuration objects obtained
+	 * from the snapshot see data of configuration sources (and of the current tenant, see
+	 * {@link #setTenantResolver(TenantResolver)}) as they are at this moment, regardless
+	 * of reloads; every key is read from the sources only once. The snapshot must be closed.
+	 *
+	 * @return new snapshot
+	 */
+	public ConfigurationSnapshot openSnapshot() {
+		final Lock lock = sourceSwapLock.readLock();
+		lock.lock();
+		try {
+			final SourceGeneration generation = sourceGeneration;
+			if (null != generation) {
+				generation.pin();
+			}
+			return new ConfigurationSnapshot(cdiDataProvider.pin(), generation);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds a configuration source while the application is running. The source gets
+	 * the lowest priority; it is kept when configuration sources are reloaded.
+	 * Configuration objects that are already injected see the new source immediately.
+	 *
+	 * @param source new configuration source
+	 */
+	public void addConfigurationSource(ConfigurationDataProvider source) {
+		if (null == source) {
+			throw new NullPointerException();
+		}
+		sourceUpdateLock.lock();
+		try {
+			runtimeSources.add(source);
+			cdiDataProvider.addDelegate(source);
+			if (source instanceof ObservableDataProvider) {
+				final ObservableDataProvider observableSource = (ObservableDataProvider) source;
+				if (!observedSources.contains(observableSource)) {
+					observedSources.add(observableSource);
+					listenerChanges.add(new ListenerChange(observableSource, true));
+				}
+			}
+		} finally {
+			sourceUpdateLock.unlock();
+		}
+		applyListenerChanges();
+		LOG.info("Added configuration source " + source);
+	}
+
+	private static List<File> getSourceFiles(List<ConfigurationDataProvider> providers) {
+		final List<File> files = new ArrayList<File>();
+		for (final ConfigurationDataProvider provider : providers) {
+			final ConfigurationDataProvider source = unwrapSource(provider);
+			if (source instanceof FileBackedDataProvider) {
+				files.addAll(((FileBackedDataProvider) source).getSourceFiles());
+			}
+		}
+		return files;
+	}
+
+	private static ConfigurationDataProvider unwrapSource(ConfigurationDataProvider provider) {
+		return (provider instanceof GuardedDataProvider) ? ((GuardedDataProvider) provider).getDelegate() : provider;
+	}
+
+	/**
+	 * Schedules registration of the change listener with observable sources among the given ones
+	 * and its removal from sources that are no longer used. Must be called while holding
+	 * {@link #sourceUpdateLock}; the changes are then made by {@link #applyListenerChanges()}.
+	 */
+	private void observeSources(List<ConfigurationDataProvider> providers) {
+		final List<ObservableDataProvider> newSources = new ArrayList<ObservableDataProvider>();
+		for (final ConfigurationDataProvider provider : providers) {
+			final ConfigurationDataProvider source = unwrapSource(provider);
+			if ((source instanceof ObservableDataProvider) && !newSources.contains(source)) {
+				newSources.add((ObservableDataProvider) source);
+			}
+		}
+		for (final ObservableDataProvider source : observedSources) {
+			if (!newSources.contains(source)) {
+				observedSources.remove(source);
+				listenerChanges.add(new ListenerChange(source, false));
+			}
+		}
+		for (final ObservableDataProvider source : newSources) {
+			if (!observedSources.contains(source)) {
+				observedSources.add(source);
+				listenerChanges.add(new ListenerChange(source, true));
+			}
 		}
-		// Prepare a list of ConfigurationDataProvider instances sorted by their priorities
-		Collections.sort(candidateList, ConfigurationSourceComparator.BY_PRIORITY);
-		final List<ConfigurationDataProvider> result = new ArrayList<ConfigurationDataProvider>(candidateList.size());
-		final CreationalContext<ConfigurationDataProvider> ctx = beanManager.createCreationalContext(null);
-		for (final Bean<ConfigurationDataProvider> candidateBean : candidateList) {
-			final ConfigurationDataProvider instance = candidateBean.create(ctx);
-			result.add(instance);
+	}
+
+	/**
+	 * Registers and removes the change listener as scheduled by {@link #observeSources(List)}.
+	 * Sources may notify listeners while holding their own locks, so no lock is held while
+	 * calling them; the changes are applied by a single thread at a time, in the order
+	 * in which they were scheduled.
+	 */
+	private void applyListenerChanges() {
+		while (!listenerChanges.isEmpty() && listenerChangeLock.tryLock()) {
+			try {
+				ListenerChange change;
+				while (null != (change = listenerChanges.poll())) {
+					change.apply(sourceChangeListener);
+				}
+			} catch (RuntimeException e) {
+				LOG.warn("Cannot update change listener of configuration source", e);
+			} finally {
+				listenerChangeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Invalidates keys reported by an observable source and notifies the application
+	 * about affected configuration objects.
+	 */
+	void sourceChanged(ConfigurationDataProvider source, Collection<String> keys) {
+		if (keys.isEmpty()) {
+			cdiDataProvider.invalidateAll();
+			LOG.debug("Configuration source " + source + " has changed, invalidated all configuration keys");
+		} else if (cdiDataProvider.isIndexed(source)) {
+			// Keys added to the source must be added to the key index as well
+			cdiDataProvider.invalidateAll();
+			LOG.debug("Indexed configuration source " + source + " reported changed keys " + keys);
+		} else {
+			cdiDataProvider.invalidate(keys);
+			LOG.debug("Configuration source " + source + " reported changed keys " + keys);
+		}
+		final BeanManager beanManager = providerBeanManager;
+		if (!deploymentValidated || (null == beanManager)) {
+			return;
+		}
+		for (final ConfigurationKeyChanged event : createKeyChangedEvents(keys)) {
+			try {
+				beanManager.fireEvent(event);
+			} catch (RuntimeException e) {
+				LOG.warn("Observer of " + event + " failed", e);
+			}
+		}
+	}
+
+	private List<ConfigurationKeyChanged> createKeyChangedEvents(Collection<String> keys) {
+		if (keys.isEmpty()) {
+			final List<ConfigurationObjectKey> objects = registeredObjects;
+			final List<ConfigurationKeyChanged> events = new ArrayList<ConfigurationKeyChanged>(objects.size());
+			for (final ConfigurationObjectKey object : objects) {
+				events.add(new ConfigurationKeyChanged(object, Collections.<String>emptySet()));
+			}
+			return events;
+		}
+		final Map<String, List<ConfigurationObjectKey>> objectsByKey = getObjectsByConfigKey();
+		final Map<ConfigurationObjectKey, Set<String>> affectedObjects = new LinkedHashMap<ConfigurationObjectKey, Set<String>>();
+		for (final String key : keys) {
+			final List<ConfigurationObjectKey> objects = objectsByKey.get(key);
+			if (null == objects) {
+				continue;
+			}
+			for (final ConfigurationObjectKey object : objects) {
+				getAffectedKeys(affectedObjects, object).add(key);
+			}
+		}
+		final List<ConfigurationObjectKey> objectsWithUnknownKeys = objectsByKey.get(null);
+		if (null != objectsWithUnknownKeys) {
+			// Keys of annotated accessors are not known, any of the changed keys may be used
+			for (final ConfigurationObjectKey object : objectsWithUnknownKeys) {
+				getAffectedKeys(affectedObjects, object).addAll(keys);
+			}
+		}
+		final List<ConfigurationKeyChanged> events = new ArrayList<ConfigurationKeyChanged>(affectedObjects.size());
+		for (final Map.Entry<ConfigurationObjectKey, Set<String>> entry : affectedObjects.entrySet()) {
+			events.add(new ConfigurationKeyChanged(entry.getKey(), entry.getValue()));
+		}
+		return events;
+	}
+
+	private static Set<String> getAffectedKeys(Map<ConfigurationObjectKey, Set<String>> affectedObjects, ConfigurationObjectKey object) {
+		Set<String> objectKeys = affectedObjects.get(object);
+		if (null == objectKeys) {
+			objectKeys = new LinkedHashSet<String>();
+			affectedObjects.put(object, objectKeys);
+		}
+		return objectKeys;
+	}
+
+	/**
+	 * Returns configuration objects by keys of their accessors. Objects with accessors
+	 * whose keys are not known (see {@link AccessorLayout#getKey(int)}) are listed
+	 * under the {@code null} key.
+	 */
+	private Map<String, List<ConfigurationObjectKey>> getObjectsByConfigKey() {
+		Map<String, List<ConfigurationObjectKey>> result = objectsByConfigKey;
+		if (null == result) {
+			// Benign race, the map is built only when the first change is reported
+			result = new HashMap<String, List<ConfigurationObjectKey>>();
+			for (final ConfigurationObjectKey object : registeredObjects) {
+				final AccessorLayout layout = AccessorLayout.of(object.getRawType());
+				if (null == layout) {
+					continue;
+				}
+				for (final String key : layout.getKeys()) {
+					addObjectByKey(result, key, object);
+				}
+				if (!layout.hasAllKeys()) {
+					addObjectByKey(result, null, object);
+				}
+			}
+			objectsByConfigKey = result;
 		}
 		return result;
 	}
 
+	private static void addObjectByKey(Map<String, List<ConfigurationObjectKey>> objectsByKey, String key, ConfigurationObjectKey object) {
+		List<ConfigurationObjectKey> objects = objectsByKey.get(key);
+		if (null == objects) {
+			objects = new ArrayList<ConfigurationObjectKey>(1);
+			objectsByKey.put(key, objects);
+		}
+		objects.add(object);
+	}
 
-	private static boolean hasQualifierType(Bean<?> bean, Class<? extends Annotation> requiredType) {
-		final Collection<Annotation> qualifiers = bean.getQualifiers();
-		if (null == qualifiers) {
-			return false;
+	/**
+	 * Finds a scope annotation placed directly on the configuration type.
+	 */
+	private static Class<? extends Annotation> getDeclaredScope(Class<?> cfgType, BeanManager beanManager) {
+		for (final Annotation annotation : cfgType.getDeclaredAnnotations()) {
+			final Class<? extends Annotation> annotationType = annotation.annotationType();
+			if (beanManager.isScope(annotationType) || beanManager.isNormalScope(annotationType)) {
+				return annotationType;
+			}
 		}
-		for (final Annotation qualifier : qualifiers) {
-			final Class<? extends Annotation> qualifierType = qualifier.annotationType();
-			if (requiredType.equals(qualifierType)) {
-				return true;
+		return null;
+	}
+
+	private AccessorLayout getAccessorLayout(Class<?> cfgType, Map<Class<?>, AccessorLayout> layouts) {
+		// Several injection keys (differing by qualifiers) may share the same layout
+		AccessorLayout layout = layouts.get(cfgType);
+		if ((null == layout) && !layouts.containsKey(cfgType)) {
+			layout = AccessorLayout.of(cfgType);
+			layouts.put(cfgType, layout);
+			if (null == layout) {
+				LOG.debug("Type " + cfgType.getName() + " is not an interface, accessor methods not available");
+			} else {
+				LOG.trace("Prepared " + layout);
 			}
 		}
-		return false;
+		return layout;
 	}
 
-	private static boolean hasBeanType(Bean<?> bean, Class<?> requiredType) {
-		final Set<Type> types = bean.getTypes();
-		for (final Type type : types) {
-			if ((type instanceof Class) && requiredType.isAssignableFrom((Class<?>) type)) {
-				return true;
+	/**
+	 * Resolves keys of all accessor methods of injected configuration types, which populates
+	 * the resolution cache. Missing keys are either logged or reported as a deployment problem.
+	 * Annotated accessors are skipped, as their keys and defaults are defined by the annotations.
+	 */
+	private void resolveEagerly(Collection<AccessorLayout> layouts, AfterBeanDiscovery event) {
+		final Map<String, List<String>> accessorsByKey = new TreeMap<String, List<String>>();
+		for (final AccessorLayout layout : layouts) {
+			if (null == layout) {
+				continue;
+			}
+			for (int slot = 0; slot < layout.getSlotCount(); ++slot) {
+				final String key = layout.getKey(slot);
+				if (null == key) {
+					// Key may be renamed or given a default value by annotations of the accessor
+					continue;
+				}
+				List<String> accessors = accessorsByKey.get(key);
+				if (null == accessors) {
+					accessors = new ArrayList<String>(1);
+					accessorsByKey.put(key, accessors);
+				}
+				accessors.add(layout.getType().getName() + '.' + layout.getMethod(slot).getName() + "()");
 			}
 		}
-		return false;
+		final long startTime = System.nanoTime();
+		final List<String> missingKeys;
+		try {
+			if (cdiDataProvider.hasBatchDelegates()) {
+				// Batch queries resolve all keys in a single pass over the sources
+				missingKeys = cdiDataProvider.prefetch(accessorsByKey.keySet());
+			} else {
+				missingKeys = new EagerKeyResolver(cdiDataProvider, Math.max(1, eagerResolutionThreads)).resolve(accessorsByKey.keySet());
+			}
+		} catch (RuntimeException e) {
+			if (EagerResolution.FAIL == eagerResolution) {
+				event.addDefinitionError(new DeploymentException("Eager resolution of configuration keys failed", e));
+			} else {
+				LOG.warn("Eager resolution of configuration keys failed", e);
+			}
+			return;
+		}
+		final long elapsedMillis = (System.nanoTime() - startTime) / 1000000L;
+		LOG.debug("Eagerly resolved " + accessorsByKey.size() + " configuration keys in " + elapsedMillis + " ms");
+		if (missingKeys.isEmpty()) {
+			return;
+		}
+		Collections.sort(missingKeys);
+		final StringBuilder report = new StringBuilder("Configuration keys not found in any configuration source:");
+		for (final String key : missingKeys) {
+			report.append("\n  ").append(key).append(" required by ").append(accessorsByKey.get(key));
+		}
+		if (EagerResolution.FAIL == eagerResolution) {
+			event.addDefinitionError(new DeploymentException(report.toString()));
+		} else {
+			LOG.warn(report.toString());
+		}
+	}
+
+	/**
+	 * Looks up the raw value of the given key without blocking the calling thread.
+	 * If the source of the key is not known yet, configuration sources are queried
+	 * in parallel and the value of the source with the highest priority is taken.
+	 *
+	 * @param key configuration key
+	 * @return future raw value, or {@link ConfigurationDataLookup#ABSENT} if the key
+	 * is not found in any configuration source
+	 */
+	public Future<Object> lookupAsync(String key) {
+		return lookupAsync(key, null);
+	}
+
+	/**
+	 * Looks up the raw value of the given key without blocking the calling thread
+	 * and notifies the callback when the value is available.
+	 *
+	 * @param key configuration key
+	 * @param callback receiver of the result, may be {@code null}
+	 * @return future raw value, or {@link ConfigurationDataLookup#ABSENT} if the key
+	 * is not found in any configuration source
+	 * @see #lookupAsync(String)
+	 */
+	public Future<Object> lookupAsync(String key, LookupCallback callback) {
+		if (null == key) {
+			throw new NullPointerException();
+		}
+		return cdiDataProvider.lookupAsync(key, getAsyncExecutor(), callback);
+	}
+
+	/**
+	 * Replaces the executor that queries configuration sources during asynchronous lookups,
+	 * e.g. by an executor that is shared with other parts of the application or that
+	 * runs every task in a new lightweight thread. The executor is not shut down
+	 * by the extension.
+	 *
+	 * @param executor executor of asynchronous lookups
+	 */
+	public void setAsyncExecutor(Executor executor) {
+		if (null == executor) {
+			throw new NullPointerException();
+		}
+		asyncExecutor = executor;
+	}
+
+	private Executor getAsyncExecutor() {
+		final Executor executor = asyncExecutor;
+		if (null != executor) {
+			return executor;
+		}
+		synchronized (this) {
+			if (null == asyncExecutor) {
+				final ThreadPoolExecutor pool = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60L, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("auderis-config-async-"));
+				pool.allowCoreThreadTimeOut(true);
+				defaultAsyncExecutor = pool;
+				asyncExecutor = pool;
+			}
+			return asyncExecutor;
+		}
+	}
+
+	private static final class ListenerChange {
+		final ObservableDataProvider source;
+		final boolean register;
+
+		ListenerChange(ObservableDataProvider source, boolean register) {
+			this.source = source;
+			this.register = register;
+		}
+
+		void apply(ConfigurationChangeListener listener) {
+			if (register) {
+				source.addChangeListener(listener);
+			} else {
+				source.removeChangeListener(listener);
+			}
+		}
+	}
+
+	/**
+	 * Sets the resolver of the tenant on whose behalf configuration data are read. Configuration
+	 * sources of the current tenant then take precedence over the shared configuration sources
+	 * for all injected configuration objects, including those that are already injected.
+	 * Data of tenants determined by the previous resolver are discarded.
+	 *
+	 * @param resolver tenant resolver, or {@code null} to use the shared sources only
+	 */
+	public void setTenantResolver(TenantResolver resolver) {
+		cdiDataProvider.setTenantResolver(resolver, tenantLimit, tenantCacheSize);
+		LOG.debug((null != resolver) ? "Configuration tenants determined by " + resolver : "Configuration tenants disabled");
+	}
+
+	/**
+	 * Discards configuration sources and cached information of the given tenant, so that its
+	 * sources are obtained from the tenant resolver again on the next access.
+	 *
+	 * @param tenant tenant identifier
+	 */
+	public void invalidateTenant(String tenant) {
+		if (null == tenant) {
+			throw new NullPointerException();
+		}
+		cdiDataProvider.invalidateTenant(tenant);
+		LOG.debug("Invalidated configuration of tenant " + tenant);
+	}
+
+	/**
+	 * Discards cached information about the given configuration keys, so that their values
+	 * are obtained from configuration sources again on the next access.
+	 *
+	 * @param keys configuration keys that have changed
+	 */
+	public void invalidate(String... keys) {
+		if (null == keys) {
+			throw new NullPointerException();
+		}
+		cdiDataProvider.invalidate(Arrays.asList(keys));
+		LOG.debug("Invalidated configuration keys " + Arrays.toString(keys));
+	}
+
+	/**
+	 * Discards all cached information about configuration keys.
+	 */
+	public void invalidateAll() {
+		cdiDataProvider.invalidateAll();
+		LOG.debug("Invalidated all configuration keys");
+	}
+
+	/**
+	 * Invalidates cached configuration data when the application reports a change.
+	 *
+	 * @param event CDI event
+	 */
+	public void configurationChanged(@Observes ConfigurationChanged event) {
+		if (event.isGlobal()) {
+			invalidateAll();
+		} else {
+			cdiDataProvider.invalidate(event.getKeys());
+			LOG.debug("Invalidated configuration keys " + event.getKeys());
+		}
+	}
+
+	/**
+	 * Creates instances of all configuration sources, in parallel if requested by
+	 * {@link ConfigurationInjectorSettings#SOURCE_CREATION_THREADS}, and guards them
+	 * if requested by their qualifiers (see {@link ConfigurationSourceCreator}).
+	 *
+	 * @return instances in the order of decreasing priority
+	 */
+	private List<ConfigurationDataProvider> getAvailableProviders(BeanManager beanManager, List<CreationalContext<?>> contexts) {
+		final List<Bean<ConfigurationDataProvider>> sourceBeans = ConfigurationSourceCreator.findSourceBeans(beanManager);
+		if (sourceBeans.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<ConfigurationDataProvider> instances = sourceCreator.create(sourceBeans, beanManager, contexts);
+		final int sourceCount = instances.size();
+		final List<ConfigurationDataProvider> result = new ArrayList<ConfigurationDataProvider>(sourceCount);
+		for (int i = 0; i < sourceCount; ++i) {
+			result.add(guardIfRequested(instances.get(i), ConfigurationSourceComparator.getConfigurationSource(sourceBeans.get(i))));
+		}
+		if (null != statistics) {
+			final List<SourceCreationReport.Entry> entries = sourceCreator.getLastReport().getEntries();
+			final Map<ConfigurationDataProvider, String> sourceNames = new IdentityHashMap<ConfigurationDataProvider, String>(2 * sourceCount);
+			for (int i = 0; i < sourceCount; ++i) {
+				final SourceCreationReport.Entry entry = entries.get(i);
+				sourceNames.put(instances.get(i), ConfigurationStatistics.getSourceName(entry.getPriority(), entry.getSource()));
+			}
+			statistics.setSourceNames(sourceNames);
+		}
+		return result;
+	}
+
+	/**
+	 * Wraps the source by {@link GuardedDataProvider} if a timeout or circuit breaker
+	 * is requested by its {@link ConfigurationSource} qualifier.
+	 */
+	private ConfigurationDataProvider guardIfRequested(ConfigurationDataProvider provider, ConfigurationSource source) {
+		if ((null == source) || ((source.timeout() <= 0L) && (source.failureThreshold() <= 0))) {
+			return provider;
+		}
+		final ExecutorService executor = (source.timeout() > 0L) ? getGuardExecutor() : null;
+		LOG.debug("Configuration source " + provider + " guarded with timeout " + source.timeout()
+				+ " ms and failure threshold " + source.failureThreshold());
+		// Last known values are needed at most for keys that can be resolved at once
+		return GuardedDataProvider.create(provider, source.timeout(), source.failureThreshold(), source.retryDelay(),
+				Math.max(1, source.maxPendingQueries()), resolutionCacheSize, executor, sourceStateListener);
+	}
+
+	private synchronized ExecutorService getGuardExecutor() {
+		if (null == guardExecutor) {
+			// Threads blocked by a hung source are abandoned, so the pool must not be bounded;
+			// the number of threads is limited by pending queries of individual sources
+			guardExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("auderis-config-guard-"));
+		}
+		return guardExecutor;
 	}
 
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names of system properties that control the behavior of {@link ConfigurationInjectorExtension}.
+ * The properties are read when the extension is instantiated by the CDI container, i.e. before
+ * the container starts to discover beans.
+ */
+public final class ConfigurationInjectorSettings {
+
+	static final String PREFIX = "auderis.config.cdi.";
+
+	/**
+	 * Maximum number of configuration keys whose owning provider is remembered.
+	 * When the limit is exceeded, least recently used keys are evicted.
+	 */
+	public static final String RESOLUTION_CACHE_SIZE = PREFIX + "resolutionCacheSize";
+	static final int DEFAULT_RESOLUTION_CACHE_SIZE = 4096;
+
+	/**
+	 * Time (in milliseconds) for which a key that was not found in any provider is remembered
+	 * as missing. Zero disables caching of missing keys, negative value means no expiration.
+	 */
+	public static final String NEGATIVE_ENTRY_TTL = PREFIX + "negativeEntryTtl";
+	static final long DEFAULT_NEGATIVE_ENTRY_TTL = 60000L;
+
+	/**
+	 * When {@code true}, raw values obtained from providers are memoized as well. Changes
+	 * of the underlying data then become visible only after invalidation, either by firing
+	 * {@link ConfigurationChanged} event or by calling
+	 * {@link ConfigurationInjectorExtension#invalidate(String...)}. Disabled by default.
+	 */
+	public static final String VALUE_CACHE = PREFIX + "valueCache";
+
+	/**
+	 * When {@code true}, method tables of configuration interfaces are prepared during
+	 * bootstrap and injected accessors keep converted values in per-method slots. Like
+	 * with {@link #VALUE_CACHE}, changes of the underlying data become visible only after
+	 * invalidation. Disabled by default.
+	 */
+	public static final String MEMOIZING_ACCESSORS = PREFIX + "memoizingAccessors";
+
+	/**
+	 * Lifecycle of injected configuration accessors: {@code dependent} (new accessor for every
+	 * injection point, default), {@code shared} (single accessor for every combination of type
+	 * and qualifiers, injected without a client proxy) or {@code application} (application
+	 * scoped beans). A scope annotation placed directly on a configuration interface
+	 * takes precedence over this setting.
+	 */
+	public static final String ACCESSOR_SCOPE = PREFIX + "accessorScope";
+
+	/**
+	 * Interval (in milliseconds) of checking files of {@link FileBackedDataProvider} configuration
+	 * sources for changes. When a change is detected, all configuration sources are reloaded.
+	 * Zero or negative value disables the checks.
+	 */
+	public static final String RELOAD_INTERVAL = PREFIX + "reloadInterval";
+	static final long DEFAULT_RELOAD_INTERVAL = 5000L;
+
+	/**
+	 * Resolution of configuration keys during bootstrap: {@code off} (keys are resolved lazily,
+	 * default), {@code warn} (keys of all injected configuration interfaces are resolved
+	 * in parallel, warming up the resolution cache, and missing keys are logged) or {@code fail}
+	 * (like {@code warn}, but missing keys cause deployment failure). Keys are derived from
+	 * accessor method names using the default naming convention ({@code getFooBar()} and
+	 * {@code isFooBar()} map to {@code fooBar}).
+	 */
+	public static final String EAGER_RESOLUTION = PREFIX + "eagerResolution";
+
+	/**
+	 * Number of threads used for eager resolution of keys (defaults to the number of processors).
+	 */
+	public static final String EAGER_RESOLUTION_THREADS = PREFIX + "eagerResolutionThreads";
+
+	/**
+	 * When {@code true}, statistics of configuration lookups, accessor creation and bootstrap
+	 * are collected and published as a JMX MBean (see {@link ConfigurationStatisticsMBean}).
+	 * Implementations of {@link ConfigurationMetrics} registered as services receive
+	 * the measurements regardless of this setting. Disabled by default.
+	 */
+	public static final String METRICS = PREFIX + "metrics";
+
+	/**
+	 * Maximum number of keys of {@link EnumerableDataProvider} configuration sources that are
+	 * collected into an index mapping keys to their sources. Sources whose keys would exceed
+	 * the limit are not indexed; zero disables the index.
+	 */
+	public static final String KEY_INDEX_LIMIT = PREFIX + "keyIndexLimit";
+	static final int DEFAULT_KEY_INDEX_LIMIT = 65536;
+
+	/**
+	 * Maximum number of threads of the default executor of asynchronous lookups
+	 * (see {@link ConfigurationInjectorExtension#lookupAsync(String, LookupCallback)}).
+	 * Idle threads are terminated; the executor can be replaced by the application.
+	 */
+	public static final String ASYNC_THREADS = PREFIX + "asyncThreads";
+	static final int DEFAULT_ASYNC_THREADS = 16;
+
+	/**
+	 * Comma separated list of packages whose classes are scanned for configuration injection
+	 * points, including their subpackages. When not set, all classes are scanned.
+	 */
+	public static final String SCAN_INCLUDE = PREFIX + "scanInclude";
+
+	/**
+	 * Comma separated list of packages whose classes (including subpackages) are not scanned
+	 * for configuration injection points. Exclusions take precedence over {@link #SCAN_INCLUDE}.
+	 */
+	public static final String SCAN_EXCLUDE = PREFIX + "scanExclude";
+
+	/**
+	 * When {@code true} (default), configuration injection points of classes listed in indexes
+	 * written at compile time by {@link InjectionPointIndexProcessor} are taken from the indexes
+	 * instead of being examined at runtime.
+	 */
+	public static final String INJECTION_INDEX = PREFIX + "injectionIndex";
+
+	/**
+	 * Maximum number of tenants whose configuration sources and resolution caches are kept
+	 * (see {@link TenantResolver}). When the limit is exceeded, data of least recently active
+	 * tenants are discarded.
+	 */
+	public static final String TENANT_LIMIT = PREFIX + "tenantLimit";
+	static final int DEFAULT_TENANT_LIMIT = 1024;
+
+	/**
+	 * Maximum number of configuration keys whose owning source is remembered for a single tenant.
+	 */
+	public static final String TENANT_CACHE_SIZE = PREFIX + "tenantCacheSize";
+	static final int DEFAULT_TENANT_CACHE_SIZE = 256;
+
+	/**
+	 * Number of threads that create configuration sources at bootstrap and during reloads.
+	 * The default value 1 creates sources one after another on the calling thread; sources
+	 * created in parallel must not depend on contexts bound to that thread.
+	 */
+	public static final String SOURCE_CREATION_THREADS = PREFIX + "sourceCreationThreads";
+
+
+	static int getInt(String name, int defaultValue) {
+		final String value = System.getProperty(name);
+		if (null == value) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			reportInvalidValue(name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	static long getLong(String name, long defaultValue) {
+		final String value = System.getProperty(name);
+		if (null == value) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			reportInvalidValue(name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	static boolean getBoolean(String name, boolean defaultValue) {
+		final String value = System.getProperty(name);
+		if (null == value) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	static <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+		final String value = System.getProperty(name);
+		if (null == value) {
+			return defaultValue;
+		}
+		final String normalizedValue = value.trim();
+		for (final E constant : type.getEnumConstants()) {
+			if (constant.name().equalsIgnoreCase(normalizedValue)) {
+				return constant;
+			}
+		}
+		reportInvalidValue(name, value, defaultValue.name().toLowerCase());
+		return defaultValue;
+	}
+
+	static String[] getPackages(String name) {
+		final String value = System.getProperty(name);
+		if (null == value) {
+			return new String[0];
+		}
+		final List<String> packages = new ArrayList<String>();
+		for (final String item : value.split(",")) {
+			final String packageName = item.trim();
+			if (!packageName.isEmpty()) {
+				packages.add(packageName);
+			}
+		}
+		return packages.toArray(new String[packages.size()]);
+	}
+
+	private static void reportInvalidValue(String name, String value, Object defaultValue) {
+		final Logger log = LoggerFactory.getLogger(ConfigurationInjectorSettings.class);
+		log.warn("Invalid value '" + value + "' of property " + name + ", using default " + defaultValue);
+	}
+
+
+	private ConfigurationInjectorSettings() {
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * CDI event fired when an {@link ObservableDataProvider} configuration source reports changed keys.
+ * A separate event is fired for every injected configuration object type (and combination
+ * of qualifiers) that has accessor methods for some of the keys; cached data of the keys are
+ * already invalidated when the event is delivered.
+ * <pre>
+ * void databaseChanged(&#64;Observes ConfigurationKeyChanged event) {
+ *     if (DatabaseConfig.class == event.getConfigurationClass()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * Keys are matched to accessor methods by the default naming convention ({@code getFooBar()}
+ * and {@code isFooBar()} map to {@code fooBar}). The event is fired even when the changed key
+ * is overridden by a configuration source with a higher priority.
+ */
+public final class ConfigurationKeyChanged {
+
+	private final Type configurationType;
+	private final Class<?> configurationClass;
+	private final Set<Annotation> qualifiers;
+	private final Set<String> keys;
+
+	ConfigurationKeyChanged(ConfigurationObjectKey objectKey, Set<String> keys) {
+		assert null != objectKey;
+		assert null != keys;
+		this.configurationType = objectKey.getType();
+		this.configurationClass = objectKey.getRawType();
+		this.qualifiers = objectKey.getQualifiers();
+		this.keys = Collections.unmodifiableSet(new LinkedHashSet<String>(keys));
+	}
+
+	/**
+	 * Returns the injected configuration type, which may be a parameterized type.
+	 */
+	public Type getConfigurationType() {
+		return configurationType;
+	}
+
+	public Class<?> getConfigurationClass() {
+		return configurationClass;
+	}
+
+	/**
+	 * Returns qualifiers of the injection points of the configuration object.
+	 */
+	public Set<Annotation> getQualifiers() {
+		return qualifiers;
+	}
+
+	/**
+	 * Returns changed keys used by the configuration type; an empty set means that
+	 * all data of a configuration source may have changed.
+	 */
+	public Set<String> getKeys() {
+		return keys;
+	}
+
+	public boolean isGlobal() {
+		return keys.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigurationKeyChanged[" + configurationType + ", " + (keys.isEmpty() ? "*" : keys.toString()) + ']';
+	}
+
+}
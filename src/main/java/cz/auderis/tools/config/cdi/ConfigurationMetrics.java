@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+/**
+ * Receiver of measurements of the configuration layer, allowing to publish them in an application
+ * specific metrics system. Implementations are discovered using {@link java.util.ServiceLoader}
+ * (i.e. they are listed in {@code META-INF/services/cz.auderis.tools.config.cdi.ConfigurationMetrics})
+ * when the extension is instantiated.
+ * <p>
+ * Methods are called synchronously from threads that read configuration values, therefore
+ * they must be thread-safe and should return quickly, without blocking.
+ */
+public interface ConfigurationMetrics {
+
+	/**
+	 * Called when a configuration key has been looked up.
+	 *
+	 * @param outcome way in which the lookup was satisfied
+	 */
+	void lookupCompleted(LookupOutcome outcome);
+
+	/**
+	 * Called when a configuration source has been queried for a key.
+	 *
+	 * @param provider configuration source
+	 * @param durationNanos duration of the query in nanoseconds
+	 */
+	void delegateQueried(ConfigurationDataProvider provider, long durationNanos);
+
+	/**
+	 * Called when a configuration object has been created for injection.
+	 *
+	 * @param configurationType type of the configuration object
+	 */
+	void accessorCreated(Class<?> configurationType);
+
+	/**
+	 * Called when a phase of the container bootstrap handled by the extension is complete.
+	 *
+	 * @param phase name of the phase
+	 * @param durationNanos duration of the phase in nanoseconds
+	 */
+	void bootstrapPhaseCompleted(String phase, long durationNanos);
+
+}
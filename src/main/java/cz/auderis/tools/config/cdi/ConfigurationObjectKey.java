@@ -16,20 +16,27 @@
 
 package cz.auderis.tools.config.cdi;
 
+import javax.enterprise.inject.Instance;
+import javax.inject.Provider;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 final class ConfigurationObjectKey {
 
-	final Class<?> type;
+	final Type type;
+	final Class<?> rawType;
 	final Set<Annotation> qualifiers;
 
-	ConfigurationObjectKey(Class<?> type, Set<Annotation> qualifiers) {
+	ConfigurationObjectKey(Type type, Set<Annotation> qualifiers) {
 		assert null != type;
 		assert null != qualifiers;
 		this.type = type;
+		this.rawType = getRawType(type);
+		assert null != rawType : "Unsupported configuration type " + type;
 		if (qualifiers.isEmpty()) {
 			this.qualifiers = Collections.emptySet();
 		} else {
@@ -38,18 +45,23 @@ final class ConfigurationObjectKey {
 		}
 	}
 
-	Class<?> getType() {
+	Type getType() {
 		return type;
 	}
 
+	Class<?> getRawType() {
+		return rawType;
+	}
+
 	Set<Annotation> getQualifiers() {
 		return qualifiers;
 	}
 
 	@Override
 	public int hashCode() {
+		// Parameterized types from different sources need not agree on hash codes
 		int result = qualifiers.hashCode();
-		result = 31 * result + type.hashCode();
+		result = 31 * result + rawType.hashCode();
 		return result;
 	}
 
@@ -71,7 +83,46 @@ final class ConfigurationObjectKey {
 
 	@Override
 	public String toString() {
-		return "CfgObjKey[class=" + type + ", qualifiers=" + qualifiers + ']';
+		return "CfgObjKey[type=" + type + ", qualifiers=" + qualifiers + ']';
+	}
+
+	/**
+	 * Returns the type of configuration object requested by an injection point.
+	 * Lazy injection points of type {@code Instance<T>} or {@code Provider<T>}
+	 * request the type argument {@code T}; the container supplies the lookup
+	 * object itself, and the configuration object is created only when
+	 * {@code get()} is invoked.
+	 *
+	 * @param pointType declared type of an injection point
+	 * @return type of requested configuration object
+	 */
+	static Type getRequestedType(Type pointType) {
+		if (pointType instanceof ParameterizedType) {
+			final ParameterizedType parameterizedType = (ParameterizedType) pointType;
+			final Type rawType = parameterizedType.getRawType();
+			if (Instance.class.equals(rawType) || Provider.class.equals(rawType)) {
+				return parameterizedType.getActualTypeArguments()[0];
+			}
+		}
+		return pointType;
+	}
+
+	/**
+	 * Returns the class that implements configuration objects of the given type,
+	 * or {@code null} if the type cannot be injected (type variables, wildcards
+	 * and arrays).
+	 *
+	 * @param type requested configuration type
+	 * @return raw class of the type or {@code null}
+	 */
+	static Class<?> getRawType(Type type) {
+		if (type instanceof Class) {
+			final Class<?> typeClass = (Class<?>) type;
+			return typeClass.isArray() ? null : typeClass;
+		} else if (type instanceof ParameterizedType) {
+			return getRawType(((ParameterizedType) type).getRawType());
+		}
+		return null;
 	}
 
 }
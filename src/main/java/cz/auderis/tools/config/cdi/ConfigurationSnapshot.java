@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationData;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Consistent view of configuration data for a unit of work, e.g. processing of a single request.
+ * Injected configuration objects resolve every call against the current configuration sources,
+ * so a bean reading several related keys during a reload may see a mix of old and new values.
+ * Configuration objects obtained from a snapshot read the sources that were in use when
+ * the snapshot was opened, and every key is resolved only once, so repeated reads within
+ * the snapshot always return the same value.
+ * <p>
+ * A snapshot is opened by {@link ConfigurationInjectorExtension#openSnapshot()} and must be
+ * closed when the unit of work ends:
+ * <pre>
+ * ConfigurationSnapshot snapshot = extension.openSnapshot();
+ * try {
+ *     DatabaseConfig db = snapshot.getConfigurationObject(DatabaseConfig.class);
+ *     connect(db.getUrl(), db.getUser(), db.getPassword());
+ * } finally {
+ *     snapshot.close();
+ * }
+ * </pre>
+ * Configuration sources replaced by a reload are destroyed only after all snapshots that use
+ * them are closed. Reads do not block; a snapshot may be shared by several threads.
+ */
+public final class ConfigurationSnapshot implements Closeable {
+
+	private static final Object NULL_VALUE = new Object();
+
+	private final ConfigurationDataLookup pinnedData;
+	private final SourceGeneration sourceGeneration;
+	private final ConcurrentMap<String, Object> values;
+	private final ConcurrentMap<Class<?>, Object> objects;
+	private final ConfigurationDataLookup snapshotData;
+	private final AtomicBoolean closed;
+
+	ConfigurationSnapshot(ConfigurationDataLookup pinnedData, SourceGeneration sourceGeneration) {
+		assert null != pinnedData;
+		this.pinnedData = pinnedData;
+		this.sourceGeneration = sourceGeneration;
+		this.values = new ConcurrentHashMap<String, Object>();
+		this.objects = new ConcurrentHashMap<Class<?>, Object>(4);
+		this.closed = new AtomicBoolean();
+		this.snapshotData = new ConfigurationDataLookup() {
+			@Override
+			public boolean containsKey(String key) {
+				return ABSENT != lookup(key);
+			}
+
+			@Override
+			public Object getRawObject(String key) {
+				final Object value = lookup(key);
+				return (ABSENT != value) ? value : null;
+			}
+
+			@Override
+			public Object lookup(String key) {
+				return ConfigurationSnapshot.this.lookup(key);
+			}
+		};
+	}
+
+	/**
+	 * Returns configuration object of the given type that reads data of this snapshot.
+	 *
+	 * @param type configuration interface
+	 * @param <T> type of configuration object
+	 * @return configuration object, the same instance for repeated calls
+	 * @throws IllegalStateException if the snapshot is closed
+	 */
+	public <T> T getConfigurationObject(Class<T> type) {
+		if (null == type) {
+			throw new NullPointerException();
+		}
+		checkOpen();
+		Object cfgObject = objects.get(type);
+		if (null == cfgObject) {
+			cfgObject = ConfigurationData.createConfigurationObject(snapshotData, type);
+			final Object concurrentObject = objects.putIfAbsent(type, cfgObject);
+			if (null != concurrentObject) {
+				cfgObject = concurrentObject;
+			}
+		}
+		return type.cast(cfgObject);
+	}
+
+	/**
+	 * Returns the raw value of the given key as seen by this snapshot.
+	 *
+	 * @param key configuration key
+	 * @return raw value, or {@code null} if the key is not found
+	 * @throws IllegalStateException if the snapshot is closed
+	 */
+	public Object getRawObject(String key) {
+		return snapshotData.getRawObject(key);
+	}
+
+	/**
+	 * Checks whether the given key is found in configuration sources of this snapshot.
+	 *
+	 * @param key configuration key
+	 * @return {@code true} if the key is found
+	 * @throws IllegalStateException if the snapshot is closed
+	 */
+	public boolean containsKey(String key) {
+		return snapshotData.containsKey(key);
+	}
+
+	private Object lookup(String key) {
+		if (null == key) {
+			throw new NullPointerException();
+		}
+		checkOpen();
+		Object value = values.get(key);
+		if (null == value) {
+			// Benign race, the value stored first is used by all readers
+			final Object resolvedValue = pinnedData.lookup(key);
+			final Object concurrentValue = values.putIfAbsent(key, (null != resolvedValue) ? resolvedValue : NULL_VALUE);
+			value = (null != concurrentValue) ? concurrentValue : resolvedValue;
+		}
+		return (NULL_VALUE != value) ? value : null;
+	}
+
+	private void checkOpen() {
+		if (closed.get()) {
+			throw new IllegalStateException("Configuration snapshot is closed");
+		}
+	}
+
+	public boolean isClosed() {
+		return closed.get();
+	}
+
+	/**
+	 * Closes the snapshot, so that configuration sources replaced since the snapshot was opened
+	 * can be destroyed. Configuration objects obtained from the snapshot must not be used
+	 * afterwards. Repeated calls have no effect.
+	 */
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true) && (null != sourceGeneration)) {
+			sourceGeneration.unpin();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigurationSnapshot[" + values.size() + " keys" + (closed.get() ? ", closed]" : "]");
+	}
+
+}
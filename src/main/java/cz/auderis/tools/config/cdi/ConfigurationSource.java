@@ -31,4 +31,34 @@ public @interface ConfigurationSource {
 	@Nonbinding
 	int priority() default 10;
 
+	/**
+	 * Maximum time in milliseconds that a single query to the source may take. When the time
+	 * elapses, the query is abandoned and the last known value of the key is used or, if there
+	 * is none, lower-priority sources are searched. Zero (default) means no limit.
+	 */
+	@Nonbinding
+	long timeout() default 0L;
+
+	/**
+	 * Number of consecutive failed or timed out queries after which the source is skipped
+	 * (its circuit breaker opens). Zero (default) disables the circuit breaker.
+	 */
+	@Nonbinding
+	int failureThreshold() default 0;
+
+	/**
+	 * Time in milliseconds for which the source is skipped after its circuit breaker opens;
+	 * afterwards a single query is let through to test whether the source has recovered.
+	 */
+	@Nonbinding
+	long retryDelay() default 30000L;
+
+	/**
+	 * Maximum number of queries with a {@link #timeout()} that may be pending at once. Queries
+	 * that time out keep running until the source answers, so the limit bounds the number
+	 * of threads held by a hung source; when it is reached, lookups use last known values.
+	 */
+	@Nonbinding
+	int maxPendingQueries() default 16;
+
 }
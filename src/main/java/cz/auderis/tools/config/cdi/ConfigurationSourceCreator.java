@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.InjectionException;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.util.AnnotationLiteral;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates instances of configuration sources, i.e. beans of {@link ConfigurationDataProvider}
+ * qualified by {@link ConfigurationSource}, at bootstrap and during reloads.
+ * <p>
+ * Sources are created in parallel by a temporary pool of daemon threads if more than one thread
+ * is requested; the pool is shut down when all sources are created. Time taken by every source
+ * and failures of sources are collected into a {@link SourceCreationReport}, which is logged
+ * and kept until the next creation.
+ */
+final class ConfigurationSourceCreator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ConfigurationSourceCreator.class);
+
+	private final int threadCount;
+	private volatile SourceCreationReport lastReport;
+
+	ConfigurationSourceCreator(int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Returns report of the most recent creation of sources, or {@code null} if no sources
+	 * were created yet.
+	 */
+	SourceCreationReport getLastReport() {
+		return lastReport;
+	}
+
+	/**
+	 * Finds beans of all configuration sources.
+	 *
+	 * @return beans in the order of decreasing priority
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Bean<ConfigurationDataProvider>> findSourceBeans(BeanManager beanManager) {
+		assert beanManager.isQualifier(ConfigurationSource.class);
+		// Find all beans and producers that provide ConfigurationDataProvider instances
+		final Annotation anyAnnotation = new AnnotationLiteral<Any>() { };
+		final Set<Bean<?>> cfgBeanCandidates = beanManager.getBeans(ConfigurationDataProvider.class, anyAnnotation);
+		if (cfgBeanCandidates.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// Filter out beans and candidates that do not have qualifier @ConfigurationSource
+		final List<Bean<ConfigurationDataProvider>> candidateList = new ArrayList<Bean<ConfigurationDataProvider>>(cfgBeanCandidates.size());
+		for (final Bean<?> candidateBean : cfgBeanCandidates) {
+			if (hasQualifierType(candidateBean, ConfigurationSource.class)) {
+				assert hasBeanType(candidateBean, ConfigurationDataProvider.class);
+				candidateList.add((Bean<ConfigurationDataProvider>) candidateBean);
+			}
+		}
+		Collections.sort(candidateList, ConfigurationSourceComparator.BY_PRIORITY);
+		return candidateList;
+	}
+
+	/**
+	 * Creates instances of the given beans. Every instance gets its own creational context,
+	 * which is added to the given list even if the instance cannot be created. If some sources
+	 * cannot be created, the failure of the first one is thrown after all sources were attempted.
+	 *
+	 * @return instances in the order of the beans
+	 */
+	List<ConfigurationDataProvider> create(List<Bean<ConfigurationDataProvider>> beans, BeanManager beanManager,
+	                                       List<CreationalContext<?>> contexts) {
+		final int sourceCount = beans.size();
+		final ConfigurationDataProvider[] instances = new ConfigurationDataProvider[sourceCount];
+		final SourceCreationReport.Entry[] entries = new SourceCreationReport.Entry[sourceCount];
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(sourceCount);
+		for (int i = 0; i < sourceCount; ++i) {
+			final Bean<ConfigurationDataProvider> bean = beans.get(i);
+			final CreationalContext<ConfigurationDataProvider> ctx = beanManager.createCreationalContext(bean);
+			contexts.add(ctx);
+			final int position = i;
+			tasks.add(Executors.callable(new Runnable() {
+				@Override
+				public void run() {
+					createSource(bean, ctx, position, instances, entries);
+				}
+			}));
+		}
+		final int usedThreads = Math.max(1, Math.min(threadCount, sourceCount));
+		final long startTime = System.nanoTime();
+		if (1 == usedThreads) {
+			for (final Callable<Object> task : tasks) {
+				runTask(task);
+			}
+		} else {
+			final ExecutorService executor = Executors.newFixedThreadPool(usedThreads, new DaemonThreadFactory("auderis-config-source-"));
+			try {
+				// Completion of the tasks makes the created instances visible to this thread
+				executor.invokeAll(tasks);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InjectionException("Interrupted while creating configuration sources", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		final SourceCreationReport report = new SourceCreationReport(Arrays.asList(entries), System.nanoTime() - startTime, usedThreads);
+		lastReport = report;
+		if (report.hasFailures()) {
+			LOG.error(report.toString());
+			throwFailure(report);
+		}
+		LOG.debug(report.toString());
+		return Arrays.asList(instances);
+	}
+
+	private static void createSource(Bean<ConfigurationDataProvider> bean, CreationalContext<ConfigurationDataProvider> ctx,
+	                                 int position, ConfigurationDataProvider[] instances, SourceCreationReport.Entry[] entries) {
+		final ConfigurationSource source = ConfigurationSourceComparator.getConfigurationSource(bean);
+		final int priority = (null != source) ? source.priority() : 0;
+		final String name = (null != bean.getName()) ? bean.getName() : bean.toString();
+		final long startTime = System.nanoTime();
+		Throwable failure = null;
+		try {
+			instances[position] = bean.create(ctx);
+		} catch (Throwable e) {
+			// Reported together with failures of other sources
+			failure = e;
+		}
+		entries[position] = new SourceCreationReport.Entry(name, priority, System.nanoTime() - startTime, failure);
+	}
+
+	private static void runTask(Callable<Object> task) {
+		try {
+			task.call();
+		} catch (Exception e) {
+			// Failures of sources are caught by the tasks
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void throwFailure(SourceCreationReport report) {
+		for (final SourceCreationReport.Entry entry : report.getEntries()) {
+			final Throwable failure = entry.getFailure();
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (null != failure) {
+				throw new InjectionException("Cannot create configuration source " + entry.getSource(), failure);
+			}
+		}
+	}
+
+	private static boolean hasQualifierType(Bean<?> bean, Class<? extends Annotation> requiredType) {
+		final Collection<Annotation> qualifiers = bean.getQualifiers();
+		if (null == qualifiers) {
+			return false;
+		}
+		for (final Annotation qualifier : qualifiers) {
+			final Class<? extends Annotation> qualifierType = qualifier.annotationType();
+			if (requiredType.equals(qualifierType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasBeanType(Bean<?> bean, Class<?> requiredType) {
+		final Set<Type> types = bean.getTypes();
+		for (final Type type : types) {
+			if ((type instanceof Class) && requiredType.isAssignableFrom((Class<?>) type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Built-in implementation of {@link ConfigurationMetrics} that aggregates measurements
+ * using striped counters and exposes them through JMX. Latencies of configuration sources
+ * are aggregated per source, identified by priority and name of the bean that produces it
+ * (as in {@link SourceCreationReport}), so that sources replaced by a reload continue
+ * the statistics of their predecessors. Sources that were not produced by beans
+ * are identified by class and identity hash code.
+ */
+final class ConfigurationStatistics implements ConfigurationMetrics, ConfigurationStatisticsMBean {
+
+	private static final LookupOutcome[] OUTCOMES = LookupOutcome.values();
+
+	private final StripedCounter[] lookupCounters;
+	private final StripedCounter accessorCreations;
+	private final ConcurrentMap<String, LatencyHistogram> latencyByProvider;
+	private final Map<String, Long> bootstrapNanos;
+	private volatile Map<ConfigurationDataProvider, String> sourceNames;
+
+	ConfigurationStatistics() {
+		this.lookupCounters = new StripedCounter[OUTCOMES.length];
+		for (int i = 0; i < OUTCOMES.length; ++i) {
+			lookupCounters[i] = new StripedCounter();
+		}
+		this.accessorCreations = new StripedCounter();
+		this.latencyByProvider = new ConcurrentHashMap<String, LatencyHistogram>();
+		this.bootstrapNanos = new ConcurrentHashMap<String, Long>();
+		this.sourceNames = Collections.emptyMap();
+	}
+
+	/**
+	 * Replaces names of configuration sources produced by beans. Names of sources
+	 * that are no longer used are discarded.
+	 *
+	 * @param names names of sources, keyed by source instance
+	 */
+	void setSourceNames(Map<ConfigurationDataProvider, String> names) {
+		assert null != names;
+		sourceNames = new IdentityHashMap<ConfigurationDataProvider, String>(names);
+	}
+
+	static String getSourceName(int priority, String beanName) {
+		return "[priority " + priority + "] " + beanName;
+	}
+
+	private String getSourceName(ConfigurationDataProvider source) {
+		final String name = sourceNames.get(source);
+		if (null != name) {
+			return name;
+		}
+		return source.getClass().getName() + '@' + Integer.toHexString(System.identityHashCode(source));
+	}
+
+	@Override
+	public void lookupCompleted(LookupOutcome outcome) {
+		lookupCounters[outcome.ordinal()].increment();
+	}
+
+	@Override
+	public void delegateQueried(ConfigurationDataProvider provider, long durationNanos) {
+		final ConfigurationDataProvider source = (provider instanceof GuardedDataProvider)
+				? ((GuardedDataProvider) provider).getDelegate()
+				: provider;
+		final String providerName = getSourceName(source);
+		LatencyHistogram histogram = latencyByProvider.get(providerName);
+		if (null == histogram) {
+			final LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = latencyByProvider.putIfAbsent(providerName, newHistogram);
+			if (null == histogram) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(durationNanos);
+	}
+
+	@Override
+	public void accessorCreated(Class<?> configurationType) {
+		accessorCreations.increment();
+	}
+
+	@Override
+	public synchronized void bootstrapPhaseCompleted(String phase, long durationNanos) {
+		final Long previousNanos = bootstrapNanos.get(phase);
+		bootstrapNanos.put(phase, (null != previousNanos) ? previousNanos + durationNanos : durationNanos);
+	}
+
+	long getCount(LookupOutcome outcome) {
+		return lookupCounters[outcome.ordinal()].get();
+	}
+
+	LatencyHistogram getLatencyHistogram(ConfigurationDataProvider source) {
+		return latencyByProvider.get(getSourceName(source));
+	}
+
+	@Override
+	public long getLookupCount() {
+		long count = 0L;
+		for (final StripedCounter counter : lookupCounters) {
+			count += counter.get();
+		}
+		return count;
+	}
+
+	@Override
+	public long getCachedValueCount() {
+		return getCount(LookupOutcome.CACHED_VALUE);
+	}
+
+	@Override
+	public long getCachedOwnerCount() {
+		return getCount(LookupOutcome.CACHED_OWNER);
+	}
+
+	@Override
+	public long getCachedAbsentCount() {
+		return getCount(LookupOutcome.CACHED_ABSENT);
+	}
+
+	@Override
+	public long getResolvedCount() {
+		return getCount(LookupOutcome.RESOLVED);
+	}
+
+	@Override
+	public long getNotFoundCount() {
+		return getCount(LookupOutcome.NOT_FOUND);
+	}
+
+	@Override
+	public double getCacheHitRatio() {
+		final long hits = getCachedValueCount() + getCachedOwnerCount() + getCachedAbsentCount();
+		return ratio(hits, getLookupCount());
+	}
+
+	@Override
+	public double getNegativeHitRatio() {
+		return ratio(getCachedAbsentCount(), getLookupCount());
+	}
+
+	private static double ratio(long count, long total) {
+		return (0L != total) ? (double) count / total : 0.0;
+	}
+
+	@Override
+	public long getAccessorCreationCount() {
+		return accessorCreations.get();
+	}
+
+	@Override
+	public String[] getBootstrapTimings() {
+		final List<String> result = new ArrayList<String>(bootstrapNanos.size());
+		for (final Map.Entry<String, Long> timing : bootstrapNanos.entrySet()) {
+			result.add(timing.getKey() + '=' + (timing.getValue() / 1000000L) + " ms");
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	@Override
+	public String[] getProviderLatencies() {
+		final List<String> result = new ArrayList<String>(latencyByProvider.size());
+		for (final Map.Entry<String, LatencyHistogram> providerEntry : latencyByProvider.entrySet()) {
+			final LatencyHistogram histogram = providerEntry.getValue();
+			final long count = histogram.getCount();
+			final long meanNanos = (0L != count) ? histogram.getTotalNanos() / count : 0L;
+			result.add(providerEntry.getKey() + ": count=" + count
+					+ ", mean=" + meanNanos
+					+ " ns, p50<" + histogram.getPercentileBound(50.0)
+					+ " ns, p99<" + histogram.getPercentileBound(99.0) + " ns");
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	@Override
+	public void reset() {
+		for (final StripedCounter counter : lookupCounters) {
+			counter.reset();
+		}
+		accessorCreations.reset();
+		for (final LatencyHistogram histogram : latencyByProvider.values()) {
+			histogram.reset();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+/**
+ * Management interface of configuration statistics, registered in the platform MBean server
+ * under the name {@code cz.auderis.config:type=ConfigurationStatistics,name=<id>}
+ * when {@link ConfigurationInjectorSettings#METRICS} is enabled.
+ */
+public interface ConfigurationStatisticsMBean {
+
+	long getLookupCount();
+
+	long getCachedValueCount();
+
+	long getCachedOwnerCount();
+
+	long getCachedAbsentCount();
+
+	long getResolvedCount();
+
+	long getNotFoundCount();
+
+	/**
+	 * Ratio of lookups that were satisfied without scanning configuration sources
+	 */
+	double getCacheHitRatio();
+
+	/**
+	 * Ratio of lookups that were satisfied by a remembered missing key
+	 */
+	double getNegativeHitRatio();
+
+	long getAccessorCreationCount();
+
+	/**
+	 * Returns durations of bootstrap phases in milliseconds, one {@code phase=duration} item per phase.
+	 */
+	String[] getBootstrapTimings();
+
+	/**
+	 * Returns latency summaries of queries to individual configuration sources, one item per source.
+	 */
+	String[] getProviderLatencies();
+
+	/**
+	 * Resets all counters except bootstrap timings.
+	 */
+	void reset();
+
+}
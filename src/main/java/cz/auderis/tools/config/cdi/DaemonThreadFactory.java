@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads of the extension, so that its pools never prevent the JVM
+ * from exiting. Threads are named by the given prefix followed by a sequence number.
+ */
+final class DaemonThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final AtomicInteger threadNumber;
+
+	DaemonThreadFactory(String namePrefix) {
+		assert null != namePrefix;
+		this.namePrefix = namePrefix;
+		this.threadNumber = new AtomicInteger();
+	}
+
+	@Override
+	public Thread newThread(Runnable task) {
+		final Thread thread = new Thread(task, namePrefix + threadNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable state of {@link InjectorDataProvider}: delegates in the order of decreasing priority,
+ * the index of keys of enumerable delegates and the cache of keys resolved against these delegates.
+ * The cache is the only mutable part and it is never shared with another snapshot, so a reader
+ * that obtained a snapshot always works with a consistent combination of delegates and cached
+ * resolutions, without any locking.
+ */
+final class DelegateSnapshot {
+
+	final ConfigurationDataProvider[] providers;
+	final Map<String, ConfigurationDataProvider> keyIndex;
+	final int indexedCount;
+	final ResolutionCache providerByKey;
+	final boolean batchCapable;
+
+	private DelegateSnapshot(ConfigurationDataProvider[] providers, Map<String, ConfigurationDataProvider> keyIndex,
+	                         int indexedCount, ResolutionCache providerByKey) {
+		this.providers = providers;
+		this.keyIndex = keyIndex;
+		this.indexedCount = indexedCount;
+		this.providerByKey = providerByKey;
+		// Only keys that are not indexed are ever fetched in batches
+		boolean batchProviderFound = false;
+		for (int i = indexedCount; i < providers.length; ++i) {
+			batchProviderFound |= providers[i] instanceof BatchDataProvider;
+		}
+		this.batchCapable = batchProviderFound;
+	}
+
+	/**
+	 * Prepares a snapshot with the given delegates and an empty resolution cache.
+	 *
+	 * @param providers delegates in the order of decreasing priority; the array is not copied
+	 *                  and must not be modified afterwards
+	 * @param keyIndexLimit maximum number of indexed keys
+	 * @param cacheSize maximum size of the resolution cache
+	 * @param negativeEntryTtl lifetime of cached missing keys in milliseconds
+	 * @return new snapshot
+	 */
+	static DelegateSnapshot create(ConfigurationDataProvider[] providers, int keyIndexLimit, int cacheSize, long negativeEntryTtl) {
+		assert null != providers;
+		// Index may be built only from a prefix of enumerable providers, otherwise
+		// a key could be pinned to a provider that is overridden by a non-indexed one
+		int indexedCount = 0;
+		long indexedKeys = 0L;
+		while (indexedCount < providers.length) {
+			final ConfigurationDataProvider provider = providers[indexedCount];
+			if (!(provider instanceof EnumerableDataProvider)) {
+				break;
+			}
+			indexedKeys += ((EnumerableDataProvider) provider).getKeys().size();
+			if (indexedKeys > keyIndexLimit) {
+				break;
+			}
+			++indexedCount;
+		}
+		final Map<String, ConfigurationDataProvider> keyIndex = buildKeyIndex(providers, indexedCount);
+		return new DelegateSnapshot(providers, keyIndex, indexedCount, new ResolutionCache(cacheSize, negativeEntryTtl));
+	}
+
+	private static Map<String, ConfigurationDataProvider> buildKeyIndex(ConfigurationDataProvider[] providers, int indexedCount) {
+		if (0 == indexedCount) {
+			return Collections.emptyMap();
+		}
+		int keyCount = 0;
+		for (int i = 0; i < indexedCount; ++i) {
+			keyCount += ((EnumerableDataProvider) providers[i]).getKeys().size();
+		}
+		final Map<String, ConfigurationDataProvider> index = new HashMap<String, ConfigurationDataProvider>((int) (keyCount / 0.75f) + 1);
+		for (int i = 0; i < indexedCount; ++i) {
+			final ConfigurationDataProvider provider = providers[i];
+			for (final String key : ((EnumerableDataProvider) provider).getKeys()) {
+				// Keys of providers with higher priority take precedence
+				if (!index.containsKey(key)) {
+					index.put(key, provider);
+				}
+			}
+		}
+		return index;
+	}
+
+	boolean contains(ConfigurationDataProvider provider) {
+		return Arrays.asList(providers).contains(provider);
+	}
+
+	List<ConfigurationDataProvider> getProviders() {
+		return Collections.unmodifiableList(Arrays.asList(providers));
+	}
+
+	@Override
+	public String toString() {
+		return "DelegateSnapshot[" + providers.length + " providers, " + keyIndex.size() + " indexed keys]";
+	}
+
+}
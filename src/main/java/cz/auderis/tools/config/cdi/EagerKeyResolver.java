@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves a set of configuration keys in parallel, so that the resolution cache
+ * (and value cache, if enabled) of the data provider is populated before the first
+ * configuration object is used.
+ * <p>
+ * Keys are split into chunks of equal size that are resolved by a temporary pool
+ * of daemon threads; the pool is shut down when the resolution completes.
+ */
+final class EagerKeyResolver {
+
+	private static final int MIN_KEYS_PER_THREAD = 16;
+
+	private final ConfigurationDataLookup dataProvider;
+	private final int threadCount;
+
+	EagerKeyResolver(ConfigurationDataLookup dataProvider, int threadCount) {
+		assert null != dataProvider;
+		assert threadCount > 0;
+		this.dataProvider = dataProvider;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Resolves all given keys.
+	 *
+	 * @param keys configuration keys
+	 * @return keys that were not found in any provider
+	 * @throws RuntimeException if a provider fails to resolve a key
+	 */
+	List<String> resolve(Collection<String> keys) {
+		assert null != keys;
+		final List<String> keyList = new ArrayList<String>(keys);
+		final int chunkCount = Math.min(threadCount, (keyList.size() + MIN_KEYS_PER_THREAD - 1) / MIN_KEYS_PER_THREAD);
+		if (chunkCount <= 1) {
+			return resolveChunk(keyList);
+		}
+		final int chunkSize = (keyList.size() + chunkCount - 1) / chunkCount;
+		final List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>(chunkCount);
+		for (int start = 0; start < keyList.size(); start += chunkSize) {
+			final List<String> chunk = keyList.subList(start, Math.min(start + chunkSize, keyList.size()));
+			tasks.add(new Callable<List<String>>() {
+				@Override
+				public List<String> call() {
+					return resolveChunk(chunk);
+				}
+			});
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), new DaemonThreadFactory("auderis-config-eager-resolver-"));
+		try {
+			final List<String> missingKeys = new ArrayList<String>();
+			for (final Future<List<String>> result : executor.invokeAll(tasks)) {
+				missingKeys.addAll(result.get());
+			}
+			return missingKeys;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Eager resolution of configuration keys interrupted", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> resolveChunk(List<String> keys) {
+		List<String> missingKeys = Collections.emptyList();
+		for (final String key : keys) {
+			if (ConfigurationDataLookup.ABSENT == dataProvider.lookup(key)) {
+				if (missingKeys.isEmpty()) {
+					missingKeys = new ArrayList<String>();
+				}
+				missingKeys.add(key);
+			}
+		}
+		return missingKeys;
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+/**
+ * Resolution of configuration keys during container bootstrap
+ *
+ * @see ConfigurationInjectorSettings#EAGER_RESOLUTION
+ */
+enum EagerResolution {
+
+	/**
+	 * Keys are resolved lazily, on the first access
+	 */
+	OFF,
+
+	/**
+	 * Keys are resolved during bootstrap, missing keys are logged
+	 */
+	WARN,
+
+	/**
+	 * Keys are resolved during bootstrap, missing keys cause deployment failure
+	 */
+	FAIL,
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.Collection;
+
+/**
+ * Configuration data provider that is able to list all keys it contains. When configuration
+ * sources are created, keys of such providers are collected into an index that maps every key
+ * directly to its owning provider, so that lookups do not need to scan the sources.
+ * <p>
+ * The index is built only from enumerable sources with the highest priorities (up to the first
+ * source that is not enumerable) and only up to the limit given by
+ * {@link ConfigurationInjectorSettings#KEY_INDEX_LIMIT}. The set of keys must not change while
+ * the provider is in use; if it does, all sources must be reloaded
+ * (see {@link ConfigurationInjectorExtension#reloadProviders()}) or invalidated globally.
+ */
+public interface EnumerableDataProvider extends ConfigurationDataProvider {
+
+	/**
+	 * Returns all keys contained in the provider. The collection may be a lazily evaluated
+	 * view, but its size must be available cheaply.
+	 *
+	 * @return collection of keys, never {@code null}
+	 */
+	Collection<String> getKeys();
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Configuration data provider whose data are loaded from files. When such a provider
+ * is registered as a {@link ConfigurationSource}, the extension watches the files and
+ * when any of them changes, all configuration sources are reloaded
+ * (see {@link ConfigurationInjectorExtension#reloadProviders()}).
+ */
+public interface FileBackedDataProvider extends ConfigurationDataProvider {
+
+	/**
+	 * Returns files that the provider has loaded its data from.
+	 *
+	 * @return collection of files, never {@code null}
+	 */
+	Collection<File> getSourceFiles();
+
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorator of a configuration source that limits the duration of queries and skips
+ * the source when it fails repeatedly (circuit breaker). When a query fails, times out
+ * or is skipped, the last value successfully obtained for the key is returned; if there
+ * is none, the key is reported as absent, so that lower-priority sources are searched.
+ * {@link InjectorDataProvider} obtains such outcomes wrapped in {@link Fallback} (see
+ * {@link #lookupGuarded(String)}) and never caches them, so the source is queried again
+ * by the next lookup of the key. Last known values are kept for a limited number of keys.
+ * <p>
+ * When a timeout is set, queries run in threads of a shared executor. A query that hangs
+ * keeps its thread busy, therefore the number of pending queries of the source is limited;
+ * when the limit is reached, further lookups use the last known values immediately.
+ * <p>
+ * The breaker is closed as long as queries succeed. After {@code failureThreshold}
+ * consecutive failures it opens and the source is not queried for {@code retryDelay}
+ * milliseconds. Then a single trial query is let through; its success closes the breaker,
+ * its failure opens it again. Every change of the breaker state is reported to the state
+ * listener, so that cached resolution of keys owned by the source can be discarded.
+ * <p>
+ * Guards created by {@link #create} implement {@link BatchDataProvider} and {@link PrimitiveDataProvider}
+ * whenever the guarded source does; such queries are subject to the same timeout and breaker.
+ * A batch query that cannot be performed throws {@link IllegalStateException}, a primitive value
+ * that cannot be obtained is reported by {@link IllegalArgumentException}, so that it is read
+ * by {@link #lookup(String)} instead.
+ */
+class GuardedDataProvider implements ConfigurationDataLookup {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GuardedDataProvider.class);
+
+	/**
+	 * Stored last known value that represents {@code null}
+	 */
+	private static final Object NULL_VALUE = new Object();
+
+	/**
+	 * Result of a guarded query that could not be performed
+	 */
+	private static final Object UNAVAILABLE = new Object();
+
+	/**
+	 * Outcome of a lookup that could not query the source, i.e. the last known value
+	 * or {@link ConfigurationDataLookup#ABSENT}. It must not be cached.
+	 */
+	static final class Fallback {
+		final Object value;
+
+		Fallback(Object value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Receiver of notifications about opening and closing of the breaker.
+	 */
+	interface StateListener {
+		void stateChanged(GuardedDataProvider guard);
+	}
+
+	private final ConfigurationDataProvider delegate;
+	private final long timeoutNanos;
+	private final int failureThreshold;
+	private final long retryDelayNanos;
+	private final ExecutorService executor;
+	private final StateListener stateListener;
+	private final ResolutionCache lastKnownValues;
+	private final Semaphore pendingQueries;
+	private final AtomicInteger consecutiveFailures;
+	private final AtomicBoolean trialInProgress;
+	private volatile boolean open;
+	private volatile long retryTime;
+
+	/**
+	 * @param delegate guarded configuration source
+	 * @param timeoutMillis maximum duration of a query, zero for no limit
+	 * @param failureThreshold number of consecutive failures that open the breaker, zero to disable
+	 * @param retryDelayMillis time for which the source is skipped when the breaker is open
+	 * @param maxPendingQueries maximum number of queries that may run in the executor at once
+	 * @param lastKnownLimit maximum number of keys whose last known value is kept
+	 * @param executor executor that performs queries with limited duration (required only if a timeout is set)
+	 * @param stateListener listener notified when the breaker opens or closes
+	 */
+	GuardedDataProvider(ConfigurationDataProvider delegate, long timeoutMillis, int failureThreshold, long retryDelayMillis,
+	                    int maxPendingQueries, int lastKnownLimit, ExecutorService executor, StateListener stateListener) {
+		assert null != delegate;
+		assert maxPendingQueries > 0;
+		assert (timeoutMillis <= 0L) || (null != executor);
+		assert null != stateListener;
+		this.delegate = delegate;
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMillis));
+		this.failureThreshold = failureThreshold;
+		this.retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, retryDelayMillis));
+		this.executor = executor;
+		this.stateListener = stateListener;
+		this.lastKnownValues = new ResolutionCache(lastKnownLimit, 0L);
+		this.pendingQueries = new Semaphore(maxPendingQueries);
+		this.consecutiveFailures = new AtomicInteger();
+		this.trialInProgress = new AtomicBoolean();
+	}
+
+	/**
+	 * Creates a guard that implements the same optional capabilities as the delegate.
+	 * Parameters are described by {@link #GuardedDataProvider the constructor}.
+	 */
+	static GuardedDataProvider create(ConfigurationDataProvider delegate, long timeoutMillis, int failureThreshold, long retryDelayMillis,
+	                                  int maxPendingQueries, int lastKnownLimit, ExecutorService executor, StateListener stateListener) {
+		final boolean batch = delegate instanceof BatchDataProvider;
+		final boolean primitive = delegate instanceof PrimitiveDataProvider;
+		if (batch && primitive) {
+			return new BatchPrimitive(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		} else if (batch) {
+			return new Batch(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		} else if (primitive) {
+			return new Primitive(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		}
+		return new GuardedDataProvider(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+	}
+
+	ConfigurationDataProvider getDelegate() {
+		return delegate;
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		return ABSENT != lookup(key);
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		final Object value = lookup(key);
+		return (ABSENT != value) ? value : null;
+	}
+
+	@Override
+	public Object lookup(String key) {
+		final Object value = lookupGuarded(key);
+		return (value instanceof Fallback) ? ((Fallback) value).value : value;
+	}
+
+	/**
+	 * Looks up the key like {@link #lookup(String)}, but wraps the outcome in {@link Fallback}
+	 * if the source was not queried successfully.
+	 */
+	Object lookupGuarded(final String key) {
+		final Object value = guarded("key " + key, new Callable<Object>() {
+			@Override
+			public Object call() {
+				return InjectorDataProvider.lookupInDelegate(delegate, key);
+			}
+		});
+		if (UNAVAILABLE == value) {
+			return getLastKnownValue(key);
+		} else if (ABSENT != value) {
+			rememberValue(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieves values of the given keys by a batch query of the delegate, which must implement
+	 * {@link BatchDataProvider}.
+	 *
+	 * @return found keys and values, or {@code null} if the source could not be queried
+	 */
+	Map<String, Object> queryBatch(final Collection<String> keys) {
+		final Object values = guarded(keys.size() + " keys", new Callable<Object>() {
+			@Override
+			public Object call() {
+				return ((BatchDataProvider) delegate).getRawObjects(keys);
+			}
+		});
+		if (UNAVAILABLE == values) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> result = (Map<String, Object>) values;
+		for (final Map.Entry<String, Object> entry : result.entrySet()) {
+			rememberValue(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Obtains a value of a primitive type from the delegate, which must implement
+	 * {@link PrimitiveDataProvider}.
+	 *
+	 * @return boxed value, or {@code null} if the value is not representable by the type
+	 * or the source could not be queried
+	 */
+	Object lookupPrimitive(final String key, final Class<?> type) {
+		final Object value = guarded("key " + key, new Callable<Object>() {
+			@Override
+			public Object call() {
+				try {
+					return InjectorDataProvider.readPrimitive((PrimitiveDataProvider) delegate, key, type);
+				} catch (IllegalArgumentException e) {
+					// Not a failure of the source, the generic conversion decides
+					return null;
+				}
+			}
+		});
+		return (UNAVAILABLE != value) ? value : null;
+	}
+
+	/**
+	 * Performs the query unless the breaker is open and records its outcome.
+	 *
+	 * @return result of the query, or {@link #UNAVAILABLE}
+	 */
+	private Object guarded(String subject, Callable<Object> task) {
+		boolean trial = false;
+		if (open) {
+			if ((System.nanoTime() - retryTime < 0L) || !trialInProgress.compareAndSet(false, true)) {
+				return UNAVAILABLE;
+			}
+			trial = true;
+		}
+		try {
+			final Object result = query(task);
+			recordSuccess();
+			return result;
+		} catch (QueryLimitException e) {
+			// The source is busy rather than failing, the breaker is not affected
+			LOG.debug("Query of " + subject + " in " + delegate + " skipped, too many pending queries");
+		} catch (TimeoutException e) {
+			LOG.debug("Query of " + subject + " in " + delegate + " timed out");
+			recordFailure();
+		} catch (RuntimeException e) {
+			LOG.debug("Query of " + subject + " in " + delegate + " failed", e);
+			recordFailure();
+		} finally {
+			if (trial) {
+				trialInProgress.set(false);
+			}
+		}
+		return UNAVAILABLE;
+	}
+
+	private Object query(final Callable<Object> task) throws TimeoutException, QueryLimitException {
+		if (0L == timeoutNanos) {
+			return call(task);
+		}
+		if (!pendingQueries.tryAcquire()) {
+			throw new QueryLimitException();
+		}
+		final Future<Object> result;
+		try {
+			result = executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					try {
+						return GuardedDataProvider.call(task);
+					} finally {
+						// Released only when the query really ends, a hung query keeps its permit
+						pendingQueries.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingQueries.release();
+			throw new IllegalStateException("Query of " + delegate + " rejected", e);
+		}
+		try {
+			return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			throw e;
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Query of " + delegate + " interrupted", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static Object call(Callable<Object> task) {
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			// Tasks of the guard do not throw checked exceptions
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void rememberValue(String key, Object value) {
+		lastKnownValues.put(key, delegate).value = (null != value) ? value : NULL_VALUE;
+	}
+
+	private Fallback getLastKnownValue(String key) {
+		final ResolutionCache.Entry entry = lastKnownValues.getEntry(key);
+		final Object value = (null != entry) ? entry.value : ResolutionCache.NO_VALUE;
+		if (ResolutionCache.NO_VALUE == value) {
+			return new Fallback(ABSENT);
+		}
+		return new Fallback((NULL_VALUE != value) ? value : null);
+	}
+
+	private void recordSuccess() {
+		consecutiveFailures.set(0);
+		if (open) {
+			open = false;
+			LOG.info("Configuration source " + delegate + " recovered");
+			stateListener.stateChanged(this);
+		}
+	}
+
+	private void recordFailure() {
+		final int failures = consecutiveFailures.incrementAndGet();
+		if ((failureThreshold > 0) && (failures >= failureThreshold)) {
+			retryTime = System.nanoTime() + retryDelayNanos;
+			if (!open) {
+				open = true;
+				LOG.warn("Configuration source " + delegate + " failed " + failures + " times, skipping it for "
+						+ TimeUnit.NANOSECONDS.toMillis(retryDelayNanos) + " ms");
+				stateListener.stateChanged(this);
+			}
+		}
+	}
+
+	/**
+	 * Implementation of {@link BatchDataProvider#getRawObjects(Collection)} for guards of batch sources.
+	 */
+	public Map<String, Object> getRawObjects(Collection<String> keys) {
+		final Map<String, Object> values = queryBatch(keys);
+		if (null == values) {
+			throw new IllegalStateException("Configuration source " + delegate + " is not available");
+		}
+		return values;
+	}
+
+	public boolean getBoolean(String key) {
+		return (Boolean) getPrimitive(key, boolean.class);
+	}
+
+	public int getInt(String key) {
+		return (Integer) getPrimitive(key, int.class);
+	}
+
+	public long getLong(String key) {
+		return (Long) getPrimitive(key, long.class);
+	}
+
+	public double getDouble(String key) {
+		return (Double) getPrimitive(key, double.class);
+	}
+
+	private Object getPrimitive(String key, Class<?> type) {
+		final Object value = lookupPrimitive(key, type);
+		if (null == value) {
+			throw new IllegalArgumentException("Value of key " + key + " is not available as " + type);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "Guarded[" + delegate + "]";
+	}
+
+	/**
+	 * Guard of a source that implements {@link BatchDataProvider}
+	 */
+	static final class Batch extends GuardedDataProvider implements BatchDataProvider {
+		Batch(ConfigurationDataProvider delegate, long timeoutMillis, int failureThreshold, long retryDelayMillis,
+		      int maxPendingQueries, int lastKnownLimit, ExecutorService executor, StateListener stateListener) {
+			super(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		}
+	}
+
+	/**
+	 * Guard of a source that implements {@link PrimitiveDataProvider}
+	 */
+	static final class Primitive extends GuardedDataProvider implements PrimitiveDataProvider {
+		Primitive(ConfigurationDataProvider delegate, long timeoutMillis, int failureThreshold, long retryDelayMillis,
+		          int maxPendingQueries, int lastKnownLimit, ExecutorService executor, StateListener stateListener) {
+			super(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		}
+	}
+
+	/**
+	 * Guard of a source that implements both {@link BatchDataProvider} and {@link PrimitiveDataProvider}
+	 */
+	static final class BatchPrimitive extends GuardedDataProvider implements BatchDataProvider, PrimitiveDataProvider {
+		BatchPrimitive(ConfigurationDataProvider delegate, long timeoutMillis, int failureThreshold, long retryDelayMillis,
+		               int maxPendingQueries, int lastKnownLimit, ExecutorService executor, StateListener stateListener) {
+			super(delegate, timeoutMillis, failureThreshold, retryDelayMillis, maxPendingQueries, lastKnownLimit, executor, stateListener);
+		}
+	}
+
+	/**
+	 * Signals that the limit of pending queries has been reached.
+	 */
+	private static final class QueryLimitException extends Exception {
+		private static final long serialVersionUID = -3146507617032945285L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// Used only for control flow, the stack trace is never needed
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Configuration injection points collected at compile time by {@link InjectionPointIndexProcessor}.
+ * The index is stored as a text resource {@value #RESOURCE}, every line holds a tab separated record:
+ * <ul>
+ *     <li>{@code inject <declaring class> <configuration type> <qualifier>,...} describes
+ *     an injection point (or several equivalent ones) of a class</li>
+ * </ul>
+ * Records of other kinds (such as {@code keys} records written by earlier versions) are ignored.
+ * Only injection points of non-generic types with qualifiers that have no members are indexed;
+ * classes with any other configuration injection point are left out entirely, so that
+ * the extension scans them at runtime.
+ */
+final class InjectionPointIndex {
+
+	static final String RESOURCE = "META-INF/auderis-config-cdi/injection-points";
+	static final String INJECT_RECORD = "inject";
+	private static final String[] NO_ITEMS = new String[0];
+
+	private final Map<String, List<Injection>> injectionsByClass;
+	private int injectionCount;
+
+	InjectionPointIndex() {
+		this.injectionsByClass = new TreeMap<String, List<Injection>>();
+	}
+
+	/**
+	 * Loads and merges all indexes visible to the given class loader.
+	 *
+	 * @param loader class loader used to locate index resources
+	 * @return merged index, empty if there are no indexes
+	 * @throws IOException if an index cannot be read
+	 */
+	static InjectionPointIndex load(ClassLoader loader) throws IOException {
+		final InjectionPointIndex index = new InjectionPointIndex();
+		final Enumeration<URL> resources = loader.getResources(RESOURCE);
+		while (resources.hasMoreElements()) {
+			final URL resource = resources.nextElement();
+			final InputStream stream = resource.openStream();
+			try {
+				index.readFrom(new InputStreamReader(stream, "UTF-8"));
+			} catch (IOException e) {
+				throw new IOException("Cannot read injection point index " + resource + ": " + e.getMessage());
+			} finally {
+				stream.close();
+			}
+		}
+		return index;
+	}
+
+	void readFrom(Reader source) throws IOException {
+		final BufferedReader reader = new BufferedReader(source);
+		int lineNumber = 0;
+		String line;
+		while (null != (line = reader.readLine())) {
+			++lineNumber;
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			final String[] fields = line.split("\t", -1);
+			if (INJECT_RECORD.equals(fields[0]) && (4 == fields.length)) {
+				addInjection(fields[1], fields[2], splitItems(fields[3]));
+			} else if (INJECT_RECORD.equals(fields[0])) {
+				throw new IOException("Malformed record at line " + lineNumber);
+			}
+			// Unknown records are left for newer versions
+		}
+	}
+
+	void writeTo(Writer target) throws IOException {
+		target.write("# Configuration injection points indexed at compile time\n");
+		for (final Map.Entry<String, List<Injection>> classEntry : injectionsByClass.entrySet()) {
+			for (final Injection injection : classEntry.getValue()) {
+				target.write(INJECT_RECORD + '\t' + classEntry.getKey() + '\t' + injection.type + '\t'
+						+ joinItems(injection.qualifiers) + '\n');
+			}
+		}
+		target.flush();
+	}
+
+	private static String[] splitItems(String value) {
+		return value.isEmpty() ? NO_ITEMS : value.split(",");
+	}
+
+	private static String joinItems(String[] items) {
+		final StringBuilder str = new StringBuilder();
+		for (final String item : items) {
+			if (0 != str.length()) {
+				str.append(',');
+			}
+			str.append(item);
+		}
+		return str.toString();
+	}
+
+	void addInjection(String declaringClass, String type, String[] qualifiers) {
+		List<Injection> injections = injectionsByClass.get(declaringClass);
+		if (null == injections) {
+			injections = new ArrayList<Injection>(2);
+			injectionsByClass.put(declaringClass, injections);
+		}
+		final Injection injection = new Injection(type, qualifiers);
+		if (!injections.contains(injection)) {
+			injections.add(injection);
+			++injectionCount;
+		}
+	}
+
+	void removeClass(String declaringClass) {
+		final List<Injection> removed = injectionsByClass.remove(declaringClass);
+		if (null != removed) {
+			injectionCount -= removed.size();
+		}
+	}
+
+	/**
+	 * Adds entries of another index, except for the given classes.
+	 *
+	 * @param other source of entries
+	 * @param replacedClasses classes whose entries are not taken from the other index
+	 */
+	void mergeFrom(InjectionPointIndex other, Set<String> replacedClasses) {
+		for (final Map.Entry<String, List<Injection>> classEntry : other.injectionsByClass.entrySet()) {
+			final String className = classEntry.getKey();
+			if (!replacedClasses.contains(className) && !injectionsByClass.containsKey(className)) {
+				for (final Injection injection : classEntry.getValue()) {
+					addInjection(className, injection.type, injection.qualifiers);
+				}
+			}
+		}
+	}
+
+	Set<String> getInjectedTypes() {
+		final Set<String> types = new HashSet<String>();
+		for (final List<Injection> injections : injectionsByClass.values()) {
+			for (final Injection injection : injections) {
+				types.add(injection.type);
+			}
+		}
+		return types;
+	}
+
+	boolean isEmpty() {
+		return injectionsByClass.isEmpty();
+	}
+
+	int getInjectionCount() {
+		return injectionCount;
+	}
+
+	Set<String> getClassNames() {
+		return Collections.unmodifiableSet(injectionsByClass.keySet());
+	}
+
+	boolean containsClass(String className) {
+		return injectionsByClass.containsKey(className);
+	}
+
+	/**
+	 * Creates injection keys of the indexed injection points of the given class.
+	 *
+	 * @param declaringClass class containing configuration injection points
+	 * @return list of injection keys, or {@code null} if the class is not indexed
+	 * @throws ClassNotFoundException if an indexed type cannot be loaded
+	 */
+	List<ConfigurationObjectKey> getInjections(Class<?> declaringClass) throws ClassNotFoundException {
+		final List<Injection> injections = injectionsByClass.get(declaringClass.getName());
+		if (null == injections) {
+			return null;
+		}
+		final ClassLoader loader = declaringClass.getClassLoader();
+		final List<ConfigurationObjectKey> result = new ArrayList<ConfigurationObjectKey>(injections.size());
+		for (final Injection injection : injections) {
+			final Class<?> type = Class.forName(injection.type, false, loader);
+			final Set<Annotation> qualifiers = new HashSet<Annotation>(2 * injection.qualifiers.length);
+			for (final String qualifierName : injection.qualifiers) {
+				final Class<?> qualifierType = Class.forName(qualifierName, false, loader);
+				if (!qualifierType.isAnnotation()) {
+					throw new ClassNotFoundException(qualifierName + " is not an annotation");
+				}
+				qualifiers.add(createQualifier(qualifierType.asSubclass(Annotation.class)));
+			}
+			result.add(new ConfigurationObjectKey(type, qualifiers));
+		}
+		return result;
+	}
+
+	private static Annotation createQualifier(Class<? extends Annotation> type) {
+		final Class<?>[] interfaces = { type };
+		return (Annotation) Proxy.newProxyInstance(type.getClassLoader(), interfaces, new MarkerAnnotationHandler(type));
+	}
+
+
+	private static final class Injection {
+		final String type;
+		final String[] qualifiers;
+
+		Injection(String type, String[] qualifiers) {
+			this.type = type;
+			this.qualifiers = qualifiers.clone();
+			Arrays.sort(this.qualifiers);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + Arrays.hashCode(qualifiers);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Injection)) {
+				return false;
+			}
+			final Injection other = (Injection) obj;
+			return type.equals(other.type) && Arrays.equals(qualifiers, other.qualifiers);
+		}
+	}
+
+
+	/**
+	 * Implements an annotation without members, which is equal to any other instance
+	 * of the annotation type (as defined by {@link Annotation#equals(Object)}).
+	 */
+	private static final class MarkerAnnotationHandler implements InvocationHandler {
+		private final Class<? extends Annotation> type;
+
+		MarkerAnnotationHandler(Class<? extends Annotation> type) {
+			this.type = type;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String name = method.getName();
+			if ("annotationType".equals(name)) {
+				return type;
+			} else if ("equals".equals(name) && (1 == method.getParameterTypes().length)) {
+				return type.isInstance(args[0]);
+			} else if ("hashCode".equals(name)) {
+				return 0;
+			} else if ("toString".equals(name)) {
+				return "@" + type.getName() + "()";
+			}
+			throw new UnsupportedOperationException(method.toString());
+		}
+	}
+
+}
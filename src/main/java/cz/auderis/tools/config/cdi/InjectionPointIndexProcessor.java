@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor that writes an index of configuration injection points
+ * of the compiled classes (see {@link InjectionPointIndex}). When the index is present,
+ * {@link ConfigurationInjectorExtension} registers configuration beans of indexed
+ * classes without examining their injection points by reflection.
+ * <p>
+ * The processor is registered as a service, so it runs automatically whenever this
+ * library is on the compilation classpath; it can be disabled by the {@code -proc:none}
+ * compiler option.
+ * <p>
+ * The processor takes part in every round, including rounds without configuration
+ * annotations, so that entries of recompiled classes which no longer have any
+ * injection points are removed from the index. It never claims any annotations.
+ */
+@SupportedAnnotationTypes("*")
+public final class InjectionPointIndexProcessor extends AbstractProcessor {
+
+	static final String CONFIGURATION_OBJECT = "cz.auderis.tools.config.annotation.ConfigurationObject";
+	private static final String INJECT = "javax.inject.Inject";
+	private static final String PRODUCES = "javax.enterprise.inject.Produces";
+	private static final String QUALIFIER = "javax.inject.Qualifier";
+	private static final String PROVIDER = "javax.inject.Provider";
+	private static final String INSTANCE = "javax.enterprise.inject.Instance";
+
+	private final InjectionPointIndex index;
+	private final Set<String> compiledClasses;
+	private final Set<String> unindexedClasses;
+
+	public InjectionPointIndexProcessor() {
+		this.index = new InjectionPointIndex();
+		this.compiledClasses = new HashSet<String>();
+		this.unindexedClasses = new HashSet<String>();
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		final Elements elements = processingEnv.getElementUtils();
+		if (roundEnv.processingOver()) {
+			if (!compiledClasses.isEmpty()) {
+				writeIndex();
+			}
+			return false;
+		}
+		for (final Element rootElement : roundEnv.getRootElements()) {
+			collectClassNames(rootElement, elements);
+		}
+		final TypeElement annotationType = elements.getTypeElement(CONFIGURATION_OBJECT);
+		if (null == annotationType) {
+			return false;
+		}
+		for (final Element element : roundEnv.getElementsAnnotatedWith(annotationType)) {
+			if (ElementKind.FIELD == element.getKind()) {
+				if (hasAnnotation(element, INJECT)) {
+					recordInjection(element, (TypeElement) element.getEnclosingElement());
+				}
+			} else if (ElementKind.PARAMETER == element.getKind()) {
+				final Element executable = element.getEnclosingElement();
+				final TypeElement declaringClass = (TypeElement) executable.getEnclosingElement();
+				if (hasAnnotation(executable, INJECT) || hasAnnotation(executable, PRODUCES)) {
+					recordInjection(element, declaringClass);
+				} else {
+					// Observer and disposer parameters are left to runtime scanning
+					excludeClass(declaringClass);
+				}
+			}
+			// Annotated types and methods are not injection points
+		}
+		return false;
+	}
+
+	private void collectClassNames(Element element, Elements elements) {
+		if (element instanceof TypeElement) {
+			compiledClasses.add(elements.getBinaryName((TypeElement) element).toString());
+			for (final Element enclosed : element.getEnclosedElements()) {
+				collectClassNames(enclosed, elements);
+			}
+		}
+	}
+
+	private void recordInjection(Element element, TypeElement declaringClass) {
+		final Elements elements = processingEnv.getElementUtils();
+		final String className = elements.getBinaryName(declaringClass).toString();
+		if (unindexedClasses.contains(className)) {
+			return;
+		}
+		final TypeMirror type = getRequestedType(element.asType());
+		if ((TypeKind.DECLARED != type.getKind()) || !((DeclaredType) type).getTypeArguments().isEmpty()) {
+			excludeClass(declaringClass);
+			return;
+		}
+		final List<String> qualifiers = new ArrayList<String>(2);
+		for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (isQualifier(annotationType)) {
+				if (!ElementFilter.methodsIn(annotationType.getEnclosedElements()).isEmpty()) {
+					// Member values cannot be reproduced without the source annotation
+					excludeClass(declaringClass);
+					return;
+				}
+				qualifiers.add(elements.getBinaryName(annotationType).toString());
+			}
+		}
+		final TypeElement cfgType = (TypeElement) ((DeclaredType) type).asElement();
+		final String cfgTypeName = elements.getBinaryName(cfgType).toString();
+		index.addInjection(className, cfgTypeName, qualifiers.toArray(new String[qualifiers.size()]));
+	}
+
+	private void excludeClass(TypeElement declaringClass) {
+		final String className = processingEnv.getElementUtils().getBinaryName(declaringClass).toString();
+		unindexedClasses.add(className);
+		index.removeClass(className);
+	}
+
+	private TypeMirror getRequestedType(TypeMirror pointType) {
+		if (TypeKind.DECLARED == pointType.getKind()) {
+			final DeclaredType declaredType = (DeclaredType) pointType;
+			final String name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+			if ((PROVIDER.equals(name) || INSTANCE.equals(name)) && (1 == declaredType.getTypeArguments().size())) {
+				return declaredType.getTypeArguments().get(0);
+			}
+		}
+		return pointType;
+	}
+
+	private static boolean isQualifier(TypeElement annotationType) {
+		return CONFIGURATION_OBJECT.equals(annotationType.getQualifiedName().toString())
+				|| hasAnnotation(annotationType, QUALIFIER);
+	}
+
+	private static boolean hasAnnotation(Element element, String annotationName) {
+		for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (annotationName.equals(annotationType.getQualifiedName().toString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeIndex() {
+		// Keep entries of classes that were not recompiled (incremental compilation)
+		final InjectionPointIndex previousIndex = new InjectionPointIndex();
+		try {
+			final FileObject previous = processingEnv.getFiler().getResource(
+					StandardLocation.CLASS_OUTPUT, "", InjectionPointIndex.RESOURCE);
+			previousIndex.readFrom(previous.openReader(true));
+		} catch (IOException e) {
+			// There is no previous index
+		} catch (IllegalArgumentException e) {
+			// Resource location is not supported
+		}
+		index.mergeFrom(previousIndex, compiledClasses);
+		if (index.isEmpty() && previousIndex.isEmpty()) {
+			return;
+		}
+		try {
+			final FileObject target = processingEnv.getFiler().createResource(
+					StandardLocation.CLASS_OUTPUT, "", InjectionPointIndex.RESOURCE);
+			final Writer writer = new OutputStreamWriter(target.openOutputStream(), "UTF-8");
+			try {
+				index.writeTo(writer);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			final String msg = "Cannot write configuration injection point index: " + e.getMessage();
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, msg);
+		}
+	}
+
+}
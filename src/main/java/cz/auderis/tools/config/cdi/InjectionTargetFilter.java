@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Selects classes whose injection points are examined by {@link ConfigurationInjectorExtension}.
+ * Candidate classes are recorded while annotated types are processed, which the container
+ * limits to types using {@link cz.auderis.tools.config.annotation.ConfigurationObject};
+ * injection targets of other classes are then skipped without walking their injection points.
+ * Candidates can be further restricted by package include and exclude lists.
+ */
+final class InjectionTargetFilter {
+
+	private final String[] includedPrefixes;
+	private final String[] excludedPrefixes;
+	private final Set<Class<?>> candidates;
+
+	InjectionTargetFilter(String[] includedPackages, String[] excludedPackages) {
+		assert null != includedPackages;
+		assert null != excludedPackages;
+		this.includedPrefixes = toPrefixes(includedPackages);
+		this.excludedPrefixes = toPrefixes(excludedPackages);
+		this.candidates = Collections.synchronizedSet(new HashSet<Class<?>>(64));
+	}
+
+	private static String[] toPrefixes(String[] packages) {
+		final String[] prefixes = new String[packages.length];
+		for (int i = 0; i < packages.length; ++i) {
+			prefixes[i] = packages[i].endsWith(".") ? packages[i] : packages[i] + '.';
+		}
+		return prefixes;
+	}
+
+	/**
+	 * Records a class that uses configuration injection, unless its package is filtered out.
+	 *
+	 * @param type class that contains configuration injection points
+	 * @return {@code true} if the class was accepted
+	 */
+	boolean addCandidate(Class<?> type) {
+		if (!isPackageAccepted(type.getName())) {
+			return false;
+		}
+		candidates.add(type);
+		return true;
+	}
+
+	/**
+	 * Checks whether the class or one of its superclasses was recorded as a candidate,
+	 * since injection points are inherited.
+	 *
+	 * @param type class of an injection target
+	 * @return {@code true} if injection points of the class should be examined
+	 */
+	boolean isCandidate(Class<?> type) {
+		for (Class<?> cls = type; (null != cls) && (Object.class != cls); cls = cls.getSuperclass()) {
+			if (candidates.contains(cls)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean isPackageAccepted(String className) {
+		for (final String prefix : excludedPrefixes) {
+			if (className.startsWith(prefix)) {
+				return false;
+			}
+		}
+		if (0 == includedPrefixes.length) {
+			return true;
+		}
+		for (final String prefix : includedPrefixes) {
+			if (className.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int getCandidateCount() {
+		return candidates.size();
+	}
+
+	void clear() {
+		candidates.clear();
+	}
+
+}
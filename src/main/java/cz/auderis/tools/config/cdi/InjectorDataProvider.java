@@ -19,64 +19,968 @@ package cz.auderis.tools.config.cdi;
 import cz.auderis.tools.config.ConfigurationDataProvider;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-class InjectorDataProvider implements ConfigurationDataProvider {
+/**
+ * Configuration data provider that is shared by all injected configuration objects.
+ * Requests are delegated to registered providers in the order of their priorities;
+ * the provider that was found to contain a particular key is remembered, so that
+ * subsequent requests for the same key do not need to scan the delegates again.
+ * <p>
+ * The instance is accessed concurrently by all threads that use injected configuration
+ * objects. Delegates, their key index and the resolution cache form an immutable
+ * {@link DelegateSnapshot}, published through an atomic reference. Readers take the current
+ * snapshot once per lookup and never block; writers (adding or replacing delegates,
+ * global invalidation) build a new snapshot and swap it atomically, so delegates can be
+ * safely added while the application is running. The resolution cache is bounded
+ * (see {@link ResolutionCache}).
+ * <p>
+ * Keys of {@link EnumerableDataProvider} delegates with the highest priorities are collected
+ * into an immutable index when the snapshot is created. Owners of indexed keys are found without
+ * scanning; keys that are not indexed are searched only in the remaining delegates.
+ * <p>
+ * Delegates that implement {@link ConfigurationDataLookup} are queried with a single
+ * call per key instead of a {@code containsKey}/{@code getRawObject} pair. Delegates
+ * that implement {@link BatchDataProvider} can resolve a whole set of keys by a single call
+ * (see {@link #prefetch(Collection)}).
+ * <p>
+ * Optionally, raw values can be memoized as well, so that a repeated read is served
+ * by a single map lookup. In that case, changes of the underlying data become visible
+ * only after the affected keys are invalidated (see {@link #invalidate(Collection)}).
+ * <p>
+ * When metrics are enabled, outcomes of lookups and durations of queries to delegates
+ * are reported to {@link ConfigurationMetrics}. Both {@link #containsKey(String)} and value
+ * retrieval count as lookups.
+ * <p>
+ * When a {@link TenantResolver} is set, keys are first searched in sources of the current
+ * tenant, each tenant having its own provider with a separate resolution cache (see
+ * {@link TenantOverlays}); delegates of this provider are shared by all tenants. Lookups
+ * in sources of tenants are not reported to metrics. Asynchronous lookups and batch
+ * prefetching use the shared delegates only.
+ */
+class InjectorDataProvider implements ConfigurationDataLookup {
+
+	/**
+	 * Result of a delegate query of an asynchronous lookup that has not completed yet
+	 */
+	private static final Object PENDING = new Object();
 
-	private final List<ConfigurationDataProvider> delegateProviders;
-	private final Map<String, ConfigurationDataProvider> providerByKey;
+	private final int cacheSize;
+	private final long negativeEntryTtl;
+	private final boolean cacheValues;
+	private final int keyIndexLimit;
+	private final AtomicLong generation;
+	private final ConfigurationMetrics metrics;
+	private final AtomicReference<DelegateSnapshot> snapshot;
+	private volatile TenantOverlays tenantOverlays;
 
 	InjectorDataProvider() {
-		this.delegateProviders = new ArrayList<ConfigurationDataProvider>(64);
-		this.providerByKey = new HashMap<String, ConfigurationDataProvider>(64);
+		this(ConfigurationInjectorSettings.DEFAULT_RESOLUTION_CACHE_SIZE, ConfigurationInjectorSettings.DEFAULT_NEGATIVE_ENTRY_TTL, false);
+	}
+
+	InjectorDataProvider(int cacheSize, long negativeEntryTtl, boolean cacheValues) {
+		this(cacheSize, negativeEntryTtl, cacheValues, ConfigurationInjectorSettings.DEFAULT_KEY_INDEX_LIMIT, null);
+	}
+
+	InjectorDataProvider(int cacheSize, long negativeEntryTtl, boolean cacheValues, int keyIndexLimit, ConfigurationMetrics metrics) {
+		this.cacheSize = cacheSize;
+		this.negativeEntryTtl = negativeEntryTtl;
+		this.cacheValues = cacheValues;
+		this.keyIndexLimit = keyIndexLimit;
+		this.generation = new AtomicLong();
+		this.metrics = metrics;
+		this.snapshot = new AtomicReference<DelegateSnapshot>(createSnapshot(new ConfigurationDataProvider[0]));
 	}
 
+	/**
+	 * Adds a delegate with the lowest priority, unless it is already present.
+	 *
+	 * @param provider new delegate
+	 */
 	void addDelegate(ConfigurationDataProvider provider) {
 		assert null != provider;
-		if (!delegateProviders.contains(provider)) {
-			delegateProviders.add(provider);
-			providerByKey.clear();
+		while (true) {
+			final DelegateSnapshot currentSnapshot = snapshot.get();
+			if (currentSnapshot.contains(provider)) {
+				return;
+			}
+			final ConfigurationDataProvider[] currentProviders = currentSnapshot.providers;
+			final ConfigurationDataProvider[] newProviders = Arrays.copyOf(currentProviders, currentProviders.length + 1);
+			newProviders[currentProviders.length] = provider;
+			if (publish(currentSnapshot, createSnapshot(newProviders))) {
+				return;
+			}
 		}
 	}
 
-	@Override
-	public boolean containsKey(String key) {
-		final ConfigurationDataProvider cachedProvider = providerByKey.get(key);
-		if ((null != cachedProvider) && (DummyProvider.INSTANCE != cachedProvider)) {
-			return true;
+	/**
+	 * Atomically replaces all delegates. Threads that are just performing a lookup
+	 * finish it with the previous delegates, all subsequent lookups use the new ones.
+	 *
+	 * @param providers new delegates, in the order of decreasing priority
+	 */
+	void replaceDelegates(List<ConfigurationDataProvider> providers) {
+		assert null != providers;
+		final ConfigurationDataProvider[] newProviders = providers.toArray(new ConfigurationDataProvider[providers.size()]);
+		final DelegateSnapshot newSnapshot = createSnapshot(newProviders);
+		snapshot.set(newSnapshot);
+		// Generation must change only after the new snapshot is visible
+		generation.incrementAndGet();
+	}
+
+	List<ConfigurationDataProvider> getDelegates() {
+		return snapshot.get().getProviders();
+	}
+
+	private DelegateSnapshot createSnapshot(ConfigurationDataProvider[] providers) {
+		return DelegateSnapshot.create(providers, keyIndexLimit, cacheSize, negativeEntryTtl);
+	}
+
+	private boolean publish(DelegateSnapshot expectedSnapshot, DelegateSnapshot newSnapshot) {
+		if (!snapshot.compareAndSet(expectedSnapshot, newSnapshot)) {
+			return false;
+		}
+		// Generation must change only after the new snapshot is visible
+		generation.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Creates a provider of sources of a single tenant, with the same settings as this
+	 * provider except for the size of the resolution cache.
+	 */
+	InjectorDataProvider createOverlay(List<ConfigurationDataProvider> providers, int overlayCacheSize) {
+		final InjectorDataProvider overlay = new InjectorDataProvider(overlayCacheSize, negativeEntryTtl, cacheValues, keyIndexLimit, null);
+		overlay.replaceDelegates(providers);
+		return overlay;
+	}
+
+	/**
+	 * Sets the resolver of tenants whose sources take precedence over the delegates,
+	 * discarding all sources of tenants determined by the previous resolver.
+	 *
+	 * @param resolver tenant resolver, or {@code null} to use the delegates only
+	 * @param tenantLimit maximum number of tenants whose sources are kept
+	 * @param tenantCacheSize maximum size of the resolution cache of a tenant
+	 */
+	void setTenantResolver(TenantResolver resolver, int tenantLimit, int tenantCacheSize) {
+		tenantOverlays = (null != resolver) ? new TenantOverlays(this, resolver, tenantLimit, tenantCacheSize) : null;
+		generation.incrementAndGet();
+	}
+
+	TenantResolver getTenantResolver() {
+		final TenantOverlays overlays = tenantOverlays;
+		return (null != overlays) ? overlays.getResolver() : null;
+	}
+
+	/**
+	 * Checks whether values may depend on the current tenant, in which case
+	 * they must not be memoized outside of this provider.
+	 */
+	boolean isTenantAware() {
+		return null != tenantOverlays;
+	}
+
+	/**
+	 * Discards sources and cached information of the given tenant; its sources
+	 * are obtained from the tenant resolver again when needed.
+	 *
+	 * @param tenant tenant identifier
+	 */
+	void invalidateTenant(String tenant) {
+		final TenantOverlays overlays = tenantOverlays;
+		if (null != overlays) {
+			overlays.discard(tenant);
+		}
+	}
+
+	private InjectorDataProvider getTenantOverlay() {
+		final TenantOverlays overlays = tenantOverlays;
+		return (null != overlays) ? overlays.getCurrentOverlay() : null;
+	}
+
+	/**
+	 * Returns receiver of measurements, or {@code null} if metrics are disabled.
+	 */
+	ConfigurationMetrics getMetrics() {
+		return metrics;
+	}
+
+	boolean isCachingValues() {
+		return cacheValues;
+	}
+
+	/**
+	 * Returns a number that changes whenever cached information is invalidated
+	 * or the set of delegates changes.
+	 */
+	long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Discards cached information (owning provider and memoized value) about the given keys,
+	 * including information cached for sources of active tenants.
+	 *
+	 * @param keys configuration keys that have changed
+	 */
+	void invalidate(Collection<String> keys) {
+		assert null != keys;
+		generation.incrementAndGet();
+		final ResolutionCache providerByKey = snapshot.get().providerByKey;
+		for (final String key : keys) {
+			providerByKey.remove(key);
+		}
+		final TenantOverlays overlays = tenantOverlays;
+		if (null != overlays) {
+			overlays.invalidate(keys);
+		}
+	}
+
+	/**
+	 * Discards cached information about keys owned by the given delegate.
+	 * Memoized values of all keys are discarded as well (see {@link #getGeneration()}).
+	 */
+	void invalidateOwner(ConfigurationDataProvider owner) {
+		assert null != owner;
+		invalidate(snapshot.get().providerByKey.getKeysOwnedBy(owner));
+	}
+
+	/**
+	 * Discards all cached information about configuration keys, including the index
+	 * of enumerable delegates, which is built again, and sources of tenants.
+	 */
+	void invalidateAll() {
+		discardTenantOverlays();
+		while (true) {
+			final DelegateSnapshot currentSnapshot = snapshot.get();
+			if (publish(currentSnapshot, createSnapshot(currentSnapshot.providers))) {
+				return;
+			}
 		}
-		for (final ConfigurationDataProvider provider : delegateProviders) {
-			if (provider.containsKey(key)) {
-				providerByKey.put(key, provider);
+	}
+
+	/**
+	 * Checks whether the given source is covered by the key index of the current delegates.
+	 */
+	boolean isIndexed(ConfigurationDataProvider source) {
+		final DelegateSnapshot currentSnapshot = snapshot.get();
+		for (int i = 0; i < currentSnapshot.indexedCount; ++i) {
+			if (source == currentSnapshot.providers[i]) {
 				return true;
 			}
 		}
-		providerByKey.put(key, DummyProvider.INSTANCE);
 		return false;
 	}
 
+	private void discardTenantOverlays() {
+		final TenantOverlays overlays = tenantOverlays;
+		if (null != overlays) {
+			overlays.discardAll();
+		}
+	}
+
 	@Override
-	public Object getRawObject(String key) {
+	public boolean containsKey(String key) {
+		return null != findOwner(key);
+	}
+
+	/**
+	 * Returns the source of the current tenant or the delegate that contains the given key,
+	 * or {@code null} if there is none.
+	 */
+	private ConfigurationDataProvider findOwner(String key) {
+		final InjectorDataProvider overlay = getTenantOverlay();
+		if (null != overlay) {
+			final ConfigurationDataProvider tenantOwner = overlay.findSharedOwner(key);
+			if (null != tenantOwner) {
+				return tenantOwner;
+			}
+		}
+		return findSharedOwner(key);
+	}
+
+	private ConfigurationDataProvider findSharedOwner(String key) {
+		final long startGeneration = generation.get();
+		final DelegateSnapshot currentSnapshot = snapshot.get();
+		final ResolutionCache providerByKey = currentSnapshot.providerByKey;
 		final ConfigurationDataProvider cachedProvider = providerByKey.get(key);
-		if ((null != cachedProvider) && (DummyProvider.INSTANCE != cachedProvider)) {
-			return cachedProvider.getRawObject(key);
+		if (DummyProvider.INSTANCE == cachedProvider) {
+			record(LookupOutcome.CACHED_ABSENT);
+			return null;
+		} else if (null != cachedProvider) {
+			record(LookupOutcome.CACHED_OWNER);
+			return cachedProvider;
+		}
+		final ConfigurationDataProvider indexedProvider = currentSnapshot.keyIndex.get(key);
+		if (null != indexedProvider) {
+			record(LookupOutcome.INDEXED_OWNER);
+			return indexedProvider;
 		}
-		for (final ConfigurationDataProvider provider : delegateProviders) {
-			if (provider.containsKey(key)) {
-				providerByKey.put(key, provider);
-				return provider.getRawObject(key);
+		final ConfigurationDataProvider[] providers = currentSnapshot.providers;
+		boolean degraded = false;
+		for (int i = currentSnapshot.indexedCount; i < providers.length; ++i) {
+			final ConfigurationDataProvider provider = providers[i];
+			if (provider instanceof GuardedDataProvider) {
+				// A guarded source is probed by a lookup, it may answer only from its fallback
+				final Object value = queryDelegate(provider, key);
+				if (value instanceof GuardedDataProvider.Fallback) {
+					degraded = true;
+					if (ABSENT == ((GuardedDataProvider.Fallback) value).value) {
+						continue;
+					}
+					record(LookupOutcome.RESOLVED);
+					return provider;
+				} else if (ABSENT == value) {
+					continue;
+				}
+			} else if (!delegateContainsKey(provider, key)) {
+				continue;
 			}
+			cacheOwner(providerByKey, key, provider, ResolutionCache.NO_VALUE, startGeneration);
+			record(LookupOutcome.RESOLVED);
+			return provider;
+		}
+		if (!degraded) {
+			cacheMissing(providerByKey, key, startGeneration);
+		}
+		record(LookupOutcome.NOT_FOUND);
+		return null;
+	}
+
+	/**
+	 * Obtains a value of a primitive type from the delegate that owns the given key,
+	 * if the delegate implements {@link PrimitiveDataProvider}.
+	 *
+	 * @param key configuration key
+	 * @param type {@code boolean}, {@code int}, {@code long} or {@code double} class
+	 * @return boxed value, or {@code null} if the value must be obtained by generic conversion
+	 */
+	Object lookupPrimitive(String key, Class<?> type) {
+		final ConfigurationDataProvider owner = findOwner(key);
+		if (!(owner instanceof PrimitiveDataProvider)) {
+			return null;
+		}
+		final long startTime = (null != metrics) ? System.nanoTime() : 0L;
+		try {
+			if (owner instanceof GuardedDataProvider) {
+				// Values that the guard cannot obtain are read from its fallback by the generic path
+				return ((GuardedDataProvider) owner).lookupPrimitive(key, type);
+			}
+			return readPrimitive((PrimitiveDataProvider) owner, key, type);
+		} catch (IllegalArgumentException e) {
+			// Not representable by the type, the generic conversion decides
+			return null;
+		} finally {
+			if (null != metrics) {
+				metrics.delegateQueried(owner, System.nanoTime() - startTime);
+			}
+		}
+	}
+
+	/**
+	 * Reads a value of the given primitive type from the provider.
+	 *
+	 * @return boxed value, or {@code null} if the type is not supported
+	 * @throws IllegalArgumentException if the value is not representable by the type
+	 */
+	static Object readPrimitive(PrimitiveDataProvider provider, String key, Class<?> type) {
+		if (int.class == type) {
+			return provider.getInt(key);
+		} else if (long.class == type) {
+			return provider.getLong(key);
+		} else if (boolean.class == type) {
+			return provider.getBoolean(key);
+		} else if (double.class == type) {
+			return provider.getDouble(key);
 		}
-		providerByKey.put(key, DummyProvider.INSTANCE);
 		return null;
 	}
 
-	enum DummyProvider implements ConfigurationDataProvider {
+	private boolean delegateContainsKey(ConfigurationDataProvider provider, String key) {
+		if (null == metrics) {
+			return provider.containsKey(key);
+		}
+		final long startTime = System.nanoTime();
+		try {
+			return provider.containsKey(key);
+		} finally {
+			metrics.delegateQueried(provider, System.nanoTime() - startTime);
+		}
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		final Object value = lookup(key);
+		return (ABSENT != value) ? value : null;
+	}
+
+	@Override
+	public Object lookup(String key) {
+		final InjectorDataProvider overlay = getTenantOverlay();
+		if (null != overlay) {
+			final Object tenantValue = overlay.lookupShared(key);
+			if (ABSENT != tenantValue) {
+				return tenantValue;
+			}
+		}
+		return lookupShared(key);
+	}
+
+	private Object lookupShared(String key) {
+		final long startGeneration = generation.get();
+		return lookupIn(snapshot.get(), startGeneration, key);
+	}
+
+	/**
+	 * Looks up the key in delegates of the given snapshot, which need not be the current one.
+	 * Resolutions are cached in the snapshot only while the generation does not change.
+	 * A resolution is not cached at all when a guarded delegate answered from its fallback,
+	 * as a lower-priority owner or a missing key would hide the delegate after its recovery.
+	 */
+	private Object lookupIn(DelegateSnapshot currentSnapshot, long startGeneration, String key) {
+		final ResolutionCache providerByKey = currentSnapshot.providerByKey;
+		final ResolutionCache.Entry entry = providerByKey.getEntry(key);
+		int firstScanned = currentSnapshot.indexedCount;
+		ConfigurationDataProvider skipped = null;
+		boolean degraded = false;
+		if (null != entry) {
+			if (entry.isMissing()) {
+				record(LookupOutcome.CACHED_ABSENT);
+				return ABSENT;
+			}
+			final Object cachedValue = entry.value;
+			if (ResolutionCache.NO_VALUE != cachedValue) {
+				record(LookupOutcome.CACHED_VALUE);
+				return cachedValue;
+			}
+			final ConfigurationDataProvider cachedProvider = entry.owner;
+			if (cachedProvider instanceof ConfigurationDataLookup) {
+				final Object value = queryDelegate(cachedProvider, key);
+				if (value instanceof GuardedDataProvider.Fallback) {
+					final Object lastKnownValue = ((GuardedDataProvider.Fallback) value).value;
+					record(LookupOutcome.CACHED_OWNER);
+					if (ABSENT != lastKnownValue) {
+						return lastKnownValue;
+					}
+					// The owner is unavailable, other providers answer until it recovers
+					skipped = cachedProvider;
+					degraded = true;
+				} else if (ABSENT != value) {
+					record(LookupOutcome.CACHED_OWNER);
+					return memoize(entry, value, startGeneration);
+				} else {
+					// The key has disappeared from its provider, find another one
+					providerByKey.remove(key);
+				}
+				firstScanned = 0;
+			} else {
+				record(LookupOutcome.CACHED_OWNER);
+				return memoize(entry, queryOwner(cachedProvider, key), startGeneration);
+			}
+		} else {
+			final ConfigurationDataProvider indexedProvider = currentSnapshot.keyIndex.get(key);
+			if (null != indexedProvider) {
+				final Object value = queryOwner(indexedProvider, key);
+				if (cacheValues) {
+					// Owner is known from the index, the entry is needed only for the value
+					cacheOwner(providerByKey, key, indexedProvider, value, startGeneration);
+				}
+				record(LookupOutcome.INDEXED_OWNER);
+				return value;
+			}
+		}
+		final ConfigurationDataProvider[] providers = currentSnapshot.providers;
+		for (int i = firstScanned; i < providers.length; ++i) {
+			final ConfigurationDataProvider provider = providers[i];
+			if (skipped == provider) {
+				continue;
+			}
+			Object value = queryDelegate(provider, key);
+			if (value instanceof GuardedDataProvider.Fallback) {
+				degraded = true;
+				value = ((GuardedDataProvider.Fallback) value).value;
+				if (ABSENT != value) {
+					record(LookupOutcome.RESOLVED);
+					return value;
+				}
+			} else if (ABSENT != value) {
+				if (!degraded) {
+					cacheOwner(providerByKey, key, provider, value, startGeneration);
+				}
+				record(LookupOutcome.RESOLVED);
+				return value;
+			}
+		}
+		if (!degraded) {
+			cacheMissing(providerByKey, key, startGeneration);
+		}
+		record(LookupOutcome.NOT_FOUND);
+		return ABSENT;
+	}
+
+	/**
+	 * Returns a view of the current delegates, together with sources of the current tenant,
+	 * that is not affected by later replacement of delegates or a change of the tenant.
+	 */
+	ConfigurationDataLookup pin() {
+		final InjectorDataProvider overlay = getTenantOverlay();
+		final PinnedLookup sharedLookup = new PinnedLookup(this, null);
+		return (null != overlay) ? new PinnedLookup(overlay, sharedLookup) : sharedLookup;
+	}
+
+	/**
+	 * Checks whether some of the delegates that are not covered by the key index
+	 * support retrieval of several keys at once.
+	 */
+	boolean hasBatchDelegates() {
+		return snapshot.get().batchCapable;
+	}
+
+	/**
+	 * Resolves owners of the given keys that are neither cached nor indexed. Delegates are
+	 * examined in the order of their priorities; a {@link BatchDataProvider} delegate is queried
+	 * once for all keys that remain unresolved, other delegates are queried key by key. Values
+	 * obtained from batch queries are memoized when values are cached; otherwise only their owners
+	 * are cached, so that every read queries the owner. Keys whose guarded delegate cannot be queried
+	 * are left unresolved.
+	 *
+	 * @param keys configuration keys
+	 * @return keys not found in any delegate
+	 */
+	List<String> prefetch(Collection<String> keys) {
+		assert null != keys;
+		final long startGeneration = generation.get();
+		final DelegateSnapshot currentSnapshot = snapshot.get();
+		final ResolutionCache providerByKey = currentSnapshot.providerByKey;
+		final List<String> pendingKeys = new ArrayList<String>(keys.size());
+		final List<String> missingKeys = new ArrayList<String>();
+		for (final String key : keys) {
+			final ConfigurationDataProvider cachedProvider = providerByKey.get(key);
+			if (DummyProvider.INSTANCE == cachedProvider) {
+				missingKeys.add(key);
+			} else if ((null == cachedProvider) && (null == currentSnapshot.keyIndex.get(key))) {
+				pendingKeys.add(key);
+			}
+		}
+		final ConfigurationDataProvider[] providers = currentSnapshot.providers;
+		for (int i = currentSnapshot.indexedCount; (i < providers.length) && !pendingKeys.isEmpty(); ++i) {
+			final ConfigurationDataProvider provider = providers[i];
+			if (provider instanceof BatchDataProvider) {
+				final Map<String, Object> values = queryBatch((BatchDataProvider) provider, pendingKeys);
+				if (null == values) {
+					// Unavailable guarded source, the remaining keys are resolved by later lookups
+					pendingKeys.clear();
+					break;
+				}
+				for (final Iterator<String> keyIterator = pendingKeys.iterator(); keyIterator.hasNext(); ) {
+					final String key = keyIterator.next();
+					if (values.containsKey(key)) {
+						cacheOwner(providerByKey, key, provider, values.get(key), startGeneration);
+						record(LookupOutcome.RESOLVED);
+						keyIterator.remove();
+					}
+				}
+			} else {
+				for (final Iterator<String> keyIterator = pendingKeys.iterator(); keyIterator.hasNext(); ) {
+					final String key = keyIterator.next();
+					final boolean found;
+					if (provider instanceof GuardedDataProvider) {
+						final Object value = queryDelegate(provider, key);
+						if (value instanceof GuardedDataProvider.Fallback) {
+							// Unavailable source, the key is resolved by a later lookup
+							keyIterator.remove();
+							continue;
+						}
+						found = (ABSENT != value);
+					} else {
+						found = delegateContainsKey(provider, key);
+					}
+					if (found) {
+						cacheOwner(providerByKey, key, provider, ResolutionCache.NO_VALUE, startGeneration);
+						record(LookupOutcome.RESOLVED);
+						keyIterator.remove();
+					}
+				}
+			}
+		}
+		for (final String key : pendingKeys) {
+			cacheMissing(providerByKey, key, startGeneration);
+			record(LookupOutcome.NOT_FOUND);
+		}
+		missingKeys.addAll(pendingKeys);
+		return missingKeys;
+	}
+
+	/**
+	 * Performs a batch query of the provider.
+	 *
+	 * @return found keys and values, or {@code null} if a guarded provider could not be queried
+	 */
+	private Map<String, Object> queryBatch(BatchDataProvider provider, List<String> keys) {
+		if (null == metrics) {
+			return queryBatchInSource(provider, keys);
+		}
+		final long startTime = System.nanoTime();
+		try {
+			return queryBatchInSource(provider, keys);
+		} finally {
+			metrics.delegateQueried(provider, System.nanoTime() - startTime);
+		}
+	}
+
+	private static Map<String, Object> queryBatchInSource(BatchDataProvider provider, List<String> keys) {
+		if (provider instanceof GuardedDataProvider) {
+			// A query abandoned after a timeout may still be reading the keys, it gets a copy
+			final Collection<String> requestedKeys = Collections.unmodifiableList(new ArrayList<String>(keys));
+			return ((GuardedDataProvider) provider).queryBatch(requestedKeys);
+		}
+		return provider.getRawObjects(Collections.unmodifiableList(keys));
+	}
+
+	private Object queryDelegate(ConfigurationDataProvider provider, String key) {
+		if (null == metrics) {
+			return lookupInSource(provider, key);
+		}
+		final long startTime = System.nanoTime();
+		try {
+			return lookupInSource(provider, key);
+		} finally {
+			metrics.delegateQueried(provider, System.nanoTime() - startTime);
+		}
+	}
+
+	private Object queryOwner(ConfigurationDataProvider provider, String key) {
+		// The provider is known to contain the key, containsKey() is not necessary
+		if (null == metrics) {
+			return getFromOwner(provider, key);
+		}
+		final long startTime = System.nanoTime();
+		try {
+			return getFromOwner(provider, key);
+		} finally {
+			metrics.delegateQueried(provider, System.nanoTime() - startTime);
+		}
+	}
+
+	private void record(LookupOutcome outcome) {
+		if (null != metrics) {
+			metrics.lookupCompleted(outcome);
+		}
+	}
+
+	/**
+	 * Looks up the given key without blocking the calling thread. Keys whose resolution
+	 * is cached or indexed are resolved by a single task; otherwise all remaining delegates
+	 * are queried in parallel and the value of the delegate with the highest priority that
+	 * contains the key is taken, as soon as all delegates with higher priorities have
+	 * reported that they do not contain it. Sources of the tenant that is current
+	 * on the calling thread are queried first.
+	 *
+	 * @param key configuration key
+	 * @param executor executor that runs queries to delegates
+	 * @param callback optional receiver of the result
+	 * @return future value, or {@link #ABSENT}
+	 */
+	Future<Object> lookupAsync(final String key, final Executor executor, LookupCallback callback) {
+		assert null != key;
+		assert null != executor;
+		final AsyncLookup result = new AsyncLookup(key, callback);
+		// The tenant is determined by the calling thread, not by threads of the executor
+		final InjectorDataProvider overlay = getTenantOverlay();
+		if (null == overlay) {
+			lookupSharedAsync(key, executor, result);
+			return result;
+		}
+		execute(executor, result, new Runnable() {
+			@Override
+			public void run() {
+				if (result.isDone()) {
+					return;
+				}
+				final Object tenantValue;
+				try {
+					tenantValue = overlay.lookupShared(key);
+				} catch (RuntimeException e) {
+					result.fail(e);
+					return;
+				}
+				if (ABSENT != tenantValue) {
+					result.complete(tenantValue);
+				} else {
+					lookupSharedAsync(key, executor, result);
+				}
+			}
+		});
+		return result;
+	}
+
+	private void lookupSharedAsync(final String key, Executor executor, final AsyncLookup result) {
+		final long startGeneration = generation.get();
+		final DelegateSnapshot currentSnapshot = snapshot.get();
+		final ResolutionCache.Entry entry = currentSnapshot.providerByKey.getEntry(key);
+		if (null != entry) {
+			if (entry.isMissing()) {
+				record(LookupOutcome.CACHED_ABSENT);
+				result.complete(ABSENT);
+				return;
+			}
+			final Object cachedValue = entry.value;
+			if (ResolutionCache.NO_VALUE != cachedValue) {
+				record(LookupOutcome.CACHED_VALUE);
+				result.complete(cachedValue);
+				return;
+			}
+		}
+		final ConfigurationDataProvider[] providers = currentSnapshot.providers;
+		final int candidateCount = providers.length - currentSnapshot.indexedCount;
+		if ((null != entry) || (null != currentSnapshot.keyIndex.get(key)) || (candidateCount <= 1)) {
+			// Only one delegate needs to be queried, the synchronous path does it
+			execute(executor, result, new Runnable() {
+				@Override
+				public void run() {
+					if (!result.isDone()) {
+						try {
+							result.complete(lookupShared(key));
+						} catch (RuntimeException e) {
+							result.fail(e);
+						}
+					}
+				}
+			});
+			return;
+		}
+		final ConfigurationDataProvider[] candidates = Arrays.copyOfRange(providers, currentSnapshot.indexedCount, providers.length);
+		final DelegateFanOut fanOut = new DelegateFanOut(result, candidates, currentSnapshot, startGeneration);
+		for (int i = 0; i < candidates.length; ++i) {
+			final int position = i;
+			execute(executor, result, new Runnable() {
+				@Override
+				public void run() {
+					fanOut.query(position);
+				}
+			});
+		}
+	}
+
+	private static void execute(Executor executor, AsyncLookup lookup, Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			lookup.fail(e);
+		}
+	}
+
+	private Object memoize(ResolutionCache.Entry entry, Object value, long startGeneration) {
+		// Values read before an invalidation must not be memoized, they might be stale
+		if (cacheValues && (startGeneration == generation.get())) {
+			entry.value = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Caches the owner of the key, together with its value if values are cached and the value
+	 * is not {@link ResolutionCache#NO_VALUE}. The generation is checked again after the entry
+	 * is stored, so that an entry that might have been stored after a concurrent invalidation
+	 * removed the key is withdrawn.
+	 */
+	private void cacheOwner(ResolutionCache providerByKey, String key, ConfigurationDataProvider owner,
+	                        Object value, long startGeneration) {
+		if (startGeneration != generation.get()) {
+			return;
+		}
+		final ResolutionCache.Entry entry = providerByKey.put(key, owner);
+		if (cacheValues && (ResolutionCache.NO_VALUE != value)) {
+			entry.value = value;
+		}
+		if (startGeneration != generation.get()) {
+			providerByKey.remove(key);
+		}
+	}
+
+	/**
+	 * Caches the absence of the key, see {@link #cacheOwner}.
+	 */
+	private void cacheMissing(ResolutionCache providerByKey, String key, long startGeneration) {
+		if (startGeneration != generation.get()) {
+			return;
+		}
+		providerByKey.putMissing(key);
+		if (startGeneration != generation.get()) {
+			providerByKey.remove(key);
+		}
+	}
+
+	private static Object getFromOwner(ConfigurationDataProvider provider, String key) {
+		if (provider instanceof ConfigurationDataLookup) {
+			final Object value = ((ConfigurationDataLookup) provider).lookup(key);
+			return (ABSENT != value) ? value : null;
+		}
+		return provider.getRawObject(key);
+	}
+
+	/**
+	 * Same as {@link #lookupInDelegate(ConfigurationDataProvider, String)}, but answers
+	 * of a guarded delegate that come from its fallback are wrapped in
+	 * {@link GuardedDataProvider.Fallback}.
+	 */
+	private static Object lookupInSource(ConfigurationDataProvider provider, String key) {
+		if (provider instanceof GuardedDataProvider) {
+			return ((GuardedDataProvider) provider).lookupGuarded(key);
+		}
+		return lookupInDelegate(provider, key);
+	}
+
+	static Object lookupInDelegate(ConfigurationDataProvider provider, String key) {
+		if (provider instanceof ConfigurationDataLookup) {
+			return ((ConfigurationDataLookup) provider).lookup(key);
+		} else if (provider.containsKey(key)) {
+			return provider.getRawObject(key);
+		}
+		return ABSENT;
+	}
+
+	/**
+	 * Parallel queries of delegates performed by an asynchronous lookup. Results are collected
+	 * in the order of delegate priorities; the lookup is completed as soon as the result
+	 * of the delegate with the highest priority that contains the key is known.
+	 */
+	private final class DelegateFanOut {
+		private final AsyncLookup lookup;
+		private final ConfigurationDataProvider[] candidates;
+		private final DelegateSnapshot queriedSnapshot;
+		private final long startGeneration;
+		private final Object[] results;
+		private boolean decided;
+
+		DelegateFanOut(AsyncLookup lookup, ConfigurationDataProvider[] candidates, DelegateSnapshot queriedSnapshot, long startGeneration) {
+			this.lookup = lookup;
+			this.candidates = candidates;
+			this.queriedSnapshot = queriedSnapshot;
+			this.startGeneration = startGeneration;
+			this.results = new Object[candidates.length];
+			Arrays.fill(results, PENDING);
+		}
+
+		void query(int position) {
+			if (lookup.isDone()) {
+				// The result is already decided by a delegate with higher priority
+				return;
+			}
+			Object result;
+			try {
+				result = queryDelegate(candidates[position], lookup.getKey());
+			} catch (RuntimeException e) {
+				result = new QueryFailure(e);
+			}
+			final Object decision = decide(position, result);
+			if (decision instanceof QueryFailure) {
+				lookup.fail(((QueryFailure) decision).cause);
+			} else if (PENDING != decision) {
+				lookup.complete(decision);
+			}
+		}
+
+		private synchronized Object decide(int position, Object result) {
+			results[position] = result;
+			if (decided) {
+				return PENDING;
+			}
+			final String key = lookup.getKey();
+			boolean degraded = false;
+			for (int i = 0; i < results.length; ++i) {
+				Object candidateResult = results[i];
+				if (PENDING == candidateResult) {
+					return PENDING;
+				} else if (candidateResult instanceof QueryFailure) {
+					decided = true;
+					return candidateResult;
+				} else if (candidateResult instanceof GuardedDataProvider.Fallback) {
+					degraded = true;
+					candidateResult = ((GuardedDataProvider.Fallback) candidateResult).value;
+					if (ABSENT != candidateResult) {
+						decided = true;
+						record(LookupOutcome.RESOLVED);
+						return candidateResult;
+					}
+				} else if (ABSENT != candidateResult) {
+					decided = true;
+					if (!degraded) {
+						cacheOwner(queriedSnapshot.providerByKey, key, candidates[i], candidateResult, startGeneration);
+					}
+					record(LookupOutcome.RESOLVED);
+					return candidateResult;
+				}
+			}
+			if (!degraded) {
+				cacheMissing(queriedSnapshot.providerByKey, key, startGeneration);
+			}
+			decided = true;
+			record(LookupOutcome.NOT_FOUND);
+			return ABSENT;
+		}
+	}
+
+	/**
+	 * Delegates of a provider captured by {@link #pin()}, optionally followed by another
+	 * pinned provider with lower priority.
+	 */
+	private static final class PinnedLookup implements ConfigurationDataLookup {
+		private final InjectorDataProvider owner;
+		private final DelegateSnapshot pinnedSnapshot;
+		private final long pinnedGeneration;
+		private final PinnedLookup next;
+
+		PinnedLookup(InjectorDataProvider owner, PinnedLookup next) {
+			this.owner = owner;
+			// Generation is read first, so that resolutions are not cached in an outdated snapshot
+			this.pinnedGeneration = owner.generation.get();
+			this.pinnedSnapshot = owner.snapshot.get();
+			this.next = next;
+		}
+
+		@Override
+		public Object lookup(String key) {
+			final Object value = owner.lookupIn(pinnedSnapshot, pinnedGeneration, key);
+			return ((ABSENT != value) || (null == next)) ? value : next.lookup(key);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			return ABSENT != lookup(key);
+		}
+
+		@Override
+		public Object getRawObject(String key) {
+			final Object value = lookup(key);
+			return (ABSENT != value) ? value : null;
+		}
+	}
+
+	private static final class QueryFailure {
+		final RuntimeException cause;
+
+		QueryFailure(RuntimeException cause) {
+			this.cause = cause;
+		}
+	}
+
+	enum DummyProvider implements ConfigurationDataLookup {
 		INSTANCE {
 			@Override public boolean containsKey(String key) { return false; }
 			@Override public Object getRawObject(String key) { return null; }
+			@Override public Object lookup(String key) { return ABSENT; }
 		}
 	}
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with buckets of exponentially growing size; bucket {@code b}
+ * counts durations shorter than 2<sup>b</sup> nanoseconds (and not counted by lower buckets).
+ * Like {@link StripedCounter}, every thread updates its own stripe of buckets.
+ */
+final class LatencyHistogram {
+
+	static final int BUCKETS = 40;
+
+	private final AtomicLongArray buckets;
+	private final StripedCounter totalNanos;
+
+	LatencyHistogram() {
+		this.buckets = new AtomicLongArray(StripedCounter.STRIPES * BUCKETS);
+		this.totalNanos = new StripedCounter();
+	}
+
+	void record(long durationNanos) {
+		final long duration = Math.max(0L, durationNanos);
+		final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration));
+		buckets.incrementAndGet(StripedCounter.currentStripe() * BUCKETS + bucket);
+		totalNanos.add(duration);
+	}
+
+	/**
+	 * Returns counts of individual buckets, summed over all stripes.
+	 */
+	long[] getBucketCounts() {
+		final long[] result = new long[BUCKETS];
+		for (int i = 0; i < buckets.length(); ++i) {
+			result[i % BUCKETS] += buckets.get(i);
+		}
+		return result;
+	}
+
+	long getCount() {
+		long count = 0L;
+		for (final long bucketCount : getBucketCounts()) {
+			count += bucketCount;
+		}
+		return count;
+	}
+
+	long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of recorded durations.
+	 *
+	 * @param percentile value between 0 and 100
+	 * @return upper bound in nanoseconds, or 0 if no duration was recorded
+	 */
+	long getPercentileBound(double percentile) {
+		final long[] counts = getBucketCounts();
+		long count = 0L;
+		for (final long bucketCount : counts) {
+			count += bucketCount;
+		}
+		if (0L == count) {
+			return 0L;
+		}
+		final long threshold = (long) Math.ceil(count * percentile / 100.0);
+		long cumulative = 0L;
+		for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+			cumulative += counts[bucket];
+			if ((cumulative >= threshold) && (0L != cumulative)) {
+				return 1L << bucket;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	void reset() {
+		for (int i = 0; i < buckets.length(); ++i) {
+			buckets.set(i, 0L);
+		}
+		totalNanos.reset();
+	}
+
+}
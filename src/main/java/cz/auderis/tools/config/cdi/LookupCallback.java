@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+/**
+ * Receiver of the result of an asynchronous configuration lookup
+ * (see {@link ConfigurationInjectorExtension#lookupAsync(String, LookupCallback)}).
+ * Methods are called by the thread that completes the lookup, which is usually a thread
+ * of the asynchronous executor, and they should not block.
+ */
+public interface LookupCallback {
+
+	/**
+	 * Called when the lookup is complete.
+	 *
+	 * @param key configuration key
+	 * @param value raw value, or {@link ConfigurationDataLookup#ABSENT} if the key
+	 *              was not found in any configuration source
+	 */
+	void lookupCompleted(String key, Object value);
+
+	/**
+	 * Called when a configuration source failed to provide the value.
+	 *
+	 * @param key configuration key
+	 * @param cause exception thrown by the configuration source
+	 */
+	void lookupFailed(String key, Throwable cause);
+
+}
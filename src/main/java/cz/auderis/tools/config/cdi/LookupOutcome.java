@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+/**
+ * Ways in which a lookup of a configuration key can be satisfied
+ *
+ * @see ConfigurationMetrics#lookupCompleted(LookupOutcome)
+ */
+public enum LookupOutcome {
+
+	/**
+	 * Memoized value was returned without querying any configuration source
+	 */
+	CACHED_VALUE,
+
+	/**
+	 * Configuration source that owns the key was known, only that source was queried
+	 */
+	CACHED_OWNER,
+
+	/**
+	 * The key was remembered as missing, no configuration source was queried
+	 */
+	CACHED_ABSENT,
+
+	/**
+	 * Configuration source that owns the key was found in the index of enumerable sources
+	 */
+	INDEXED_OWNER,
+
+	/**
+	 * Configuration sources were scanned and the key was found
+	 */
+	RESOLVED,
+
+	/**
+	 * Configuration sources were scanned and the key was not found
+	 */
+	NOT_FOUND,
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Build-time tool that compiles configuration entries into a binary snapshot readable
+ * by {@link MappedConfigurationDataProvider}. It can be invoked from the command line
+ * (or from a build, e.g. by {@code exec-maven-plugin}):
+ * <pre>
+ * java cz.auderis.tools.config.cdi.MappedConfigurationCompiler output.bin base.properties override.properties
+ * </pre>
+ * When a key is present in several input files, the value from the last one is used.
+ */
+public final class MappedConfigurationCompiler {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: " + MappedConfigurationCompiler.class.getName()
+					+ " <output file> <properties file> [<properties file> ...]");
+			System.exit(1);
+		}
+		final Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i = 1; i < args.length; ++i) {
+			entries.putAll(loadProperties(new File(args[i])));
+		}
+		final File output = new File(args[0]);
+		compile(entries, output);
+		System.out.println("Compiled " + entries.size() + " configuration entries into " + output);
+	}
+
+	/**
+	 * Writes the given entries into a binary configuration snapshot. The snapshot is first written
+	 * into a temporary file in the directory of the target, which then replaces the target by renaming,
+	 * so that processes which have the previous snapshot mapped never see it truncated or partially
+	 * overwritten.
+	 *
+	 * @param entries configuration keys and values; {@code null} values are not allowed
+	 * @param output target file
+	 * @throws IOException when the file cannot be written
+	 */
+	public static void compile(Map<String, String> entries, File output) throws IOException {
+		if ((null == entries) || (null == output)) {
+			throw new NullPointerException();
+		}
+		final int count = entries.size();
+		final byte[][] keys = new byte[count][];
+		final byte[][] values = new byte[count][];
+		final Integer[] order = new Integer[count];
+		int position = 0;
+		for (final Map.Entry<String, String> entry : entries.entrySet()) {
+			if (null == entry.getValue()) {
+				throw new IllegalArgumentException("Missing value of configuration key " + entry.getKey());
+			}
+			keys[position] = entry.getKey().getBytes(MappedConfigurationDataProvider.UTF8);
+			values[position] = entry.getValue().getBytes(MappedConfigurationDataProvider.UTF8);
+			order[position] = position;
+			++position;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return compareBytes(keys[i1], keys[i2]);
+			}
+		});
+		final File directory = output.getAbsoluteFile().getParentFile();
+		final File temporary = File.createTempFile(output.getName() + '.', ".tmp", directory);
+		boolean written = false;
+		try {
+			writeSnapshot(keys, values, order, temporary);
+			replaceFile(temporary, output);
+			written = true;
+		} finally {
+			if (!written) {
+				temporary.delete();
+			}
+		}
+	}
+
+	private static void writeSnapshot(byte[][] keys, byte[][] values, Integer[] order, File output) throws IOException {
+		final int count = order.length;
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		try {
+			out.writeInt(MappedConfigurationDataProvider.MAGIC);
+			out.writeInt(MappedConfigurationDataProvider.FORMAT_VERSION);
+			out.writeInt(count);
+			long dataOffset = MappedConfigurationDataProvider.HEADER_SIZE + (long) count * MappedConfigurationDataProvider.INDEX_ENTRY_SIZE;
+			for (final Integer index : order) {
+				out.writeInt(checkOffset(dataOffset));
+				out.writeInt(keys[index].length);
+				dataOffset += keys[index].length;
+				out.writeInt(checkOffset(dataOffset));
+				out.writeInt(values[index].length);
+				dataOffset += values[index].length;
+			}
+			checkOffset(dataOffset);
+			for (final Integer index : order) {
+				out.write(keys[index]);
+				out.write(values[index]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void replaceFile(File source, File target) throws IOException {
+		if (source.renameTo(target)) {
+			return;
+		}
+		// Some platforms do not allow renaming over an existing file
+		if (target.exists() && !target.delete()) {
+			throw new IOException("Cannot replace configuration snapshot " + target);
+		}
+		if (!source.renameTo(target)) {
+			throw new IOException("Cannot move configuration snapshot " + source + " to " + target);
+		}
+	}
+
+	static int compareBytes(byte[] b1, byte[] b2) {
+		final int commonLength = Math.min(b1.length, b2.length);
+		for (int i = 0; i < commonLength; ++i) {
+			final int diff = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+			if (0 != diff) {
+				return diff;
+			}
+		}
+		return b1.length - b2.length;
+	}
+
+	private static int checkOffset(long offset) throws IOException {
+		if (offset > Integer.MAX_VALUE) {
+			throw new IOException("Configuration data too large for a snapshot");
+		}
+		return (int) offset;
+	}
+
+	private static Map<String, String> loadProperties(File file) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream input = new FileInputStream(file);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		final Map<String, String> result = new LinkedHashMap<String, String>(2 * properties.size());
+		for (final String name : properties.stringPropertyNames()) {
+			result.put(name, properties.getProperty(name));
+		}
+		return result;
+	}
+
+
+	private MappedConfigurationCompiler() {
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Configuration data provider that reads a binary configuration snapshot prepared
+ * at build time by {@link MappedConfigurationCompiler}. The file is memory-mapped and
+ * keys are looked up by a binary search performed directly in the mapped bytes, so
+ * neither startup time nor heap usage grow with the size of the configuration; only
+ * values of requested keys are materialized as strings.
+ * <p>
+ * To use the provider, declare it as a configuration source:
+ * <pre>
+ * &#64;Produces &#64;ConfigurationSource(priority = 50)
+ * static ConfigurationDataProvider snapshot() throws IOException {
+ *     return new MappedConfigurationDataProvider(new File("/etc/app/config.bin"));
+ * }
+ * </pre>
+ * The provider reports its file for change detection, so a recompiled snapshot is picked
+ * up automatically. A snapshot must never be modified in place while it is mapped; write
+ * the new snapshot into a temporary file and rename it instead. The provider does not implement
+ * {@link EnumerableDataProvider}, as the key index would decode all keys into the heap.
+ *
+ * <h3>File format</h3>
+ * All numbers are big-endian 32-bit integers:
+ * <ul>
+ *     <li>header: magic number {@code 0x41434647}, format version, entry count</li>
+ *     <li>index: for every entry, offset and length of the key, offset and length of the value;
+ *     entries are sorted by UTF-8 bytes of keys (compared as unsigned numbers)</li>
+ *     <li>data: UTF-8 encoded keys and values, offsets are relative to the beginning of the file</li>
+ * </ul>
+ */
+public class MappedConfigurationDataProvider implements ConfigurationDataLookup, FileBackedDataProvider {
+
+	static final int MAGIC = 0x41434647;
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	static final int INDEX_ENTRY_SIZE = 16;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final int entryCount;
+
+	public MappedConfigurationDataProvider(File file) throws IOException {
+		if (null == file) {
+			throw new NullPointerException();
+		}
+		this.file = file;
+		this.buffer = mapFile(file);
+		if (buffer.capacity() < HEADER_SIZE || MAGIC != buffer.getInt(0)) {
+			throw new IOException("File " + file + " is not a configuration snapshot");
+		}
+		final int version = buffer.getInt(4);
+		if (FORMAT_VERSION != version) {
+			throw new IOException("Unsupported version " + version + " of configuration snapshot " + file);
+		}
+		this.entryCount = buffer.getInt(8);
+		if ((entryCount < 0) || ((long) HEADER_SIZE + (long) entryCount * INDEX_ENTRY_SIZE > buffer.capacity())) {
+			throw new IOException("Configuration snapshot " + file + " is corrupted");
+		}
+	}
+
+	private static MappedByteBuffer mapFile(File file) throws IOException {
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = input.getChannel();
+			// The mapping remains valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+		} finally {
+			input.close();
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public Collection<File> getSourceFiles() {
+		return Collections.singleton(file);
+	}
+
+	public int size() {
+		return entryCount;
+	}
+
+	/**
+	 * Returns a view of keys of the snapshot; keys are decoded from the mapped file on access.
+	 */
+	public Collection<String> getKeys() {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				if ((index < 0) || (index >= entryCount)) {
+					throw new IndexOutOfBoundsException(Integer.toString(index));
+				}
+				return getKey(index);
+			}
+
+			@Override
+			public int size() {
+				return entryCount;
+			}
+		};
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		return findEntry(key.getBytes(UTF8)) >= 0;
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		final Object value = lookup(key);
+		return (ABSENT != value) ? value : null;
+	}
+
+	@Override
+	public Object lookup(String key) {
+		final int entry = findEntry(key.getBytes(UTF8));
+		if (entry < 0) {
+			return ABSENT;
+		}
+		final int indexPosition = HEADER_SIZE + entry * INDEX_ENTRY_SIZE;
+		return decodeString(buffer.getInt(indexPosition + 8), buffer.getInt(indexPosition + 12));
+	}
+
+	String getKey(int entry) {
+		assert (entry >= 0) && (entry < entryCount);
+		final int indexPosition = HEADER_SIZE + entry * INDEX_ENTRY_SIZE;
+		return decodeString(buffer.getInt(indexPosition), buffer.getInt(indexPosition + 4));
+	}
+
+	private int findEntry(byte[] key) {
+		int low = 0;
+		int high = entryCount - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int indexPosition = HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+			final int comparison = compareKey(buffer.getInt(indexPosition), buffer.getInt(indexPosition + 4), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private int compareKey(int offset, int length, byte[] key) {
+		final int commonLength = Math.min(length, key.length);
+		for (int i = 0; i < commonLength; ++i) {
+			final int diff = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+			if (0 != diff) {
+				return diff;
+			}
+		}
+		return length - key.length;
+	}
+
+	private String decodeString(int offset, int length) {
+		// Absolute positioning on a duplicate keeps the shared buffer usable by concurrent readers
+		final ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+		return UTF8.decode(view).toString();
+	}
+
+	@Override
+	public String toString() {
+		return "MappedConfiguration[" + file + ", " + entryCount + " entries]";
+	}
+
+}
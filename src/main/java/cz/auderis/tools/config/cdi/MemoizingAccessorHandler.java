@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Invocation handler of memoizing configuration accessors. Accessor methods are looked up
+ * in the {@link AccessorLayout} prepared at bootstrap; once a value has been resolved and
+ * converted by the standard configuration proxy, subsequent calls are served directly from
+ * a slot array. The array is discarded whenever the data of the underlying
+ * {@link InjectorDataProvider} are invalidated.
+ * <p>
+ * Values of primitive slots are taken directly from the owning provider when it implements
+ * {@link PrimitiveDataProvider}. Since a proxy returns primitives boxed, the slot keeps the box
+ * created at resolution, so repeated reads do not allocate.
+ * <p>
+ * While a {@link TenantResolver} is set, values may differ between tenants; slots are then
+ * bypassed and every call is resolved by the data provider, which caches resolutions per tenant.
+ */
+final class MemoizingAccessorHandler implements InvocationHandler {
+
+	private static final Object UNRESOLVED = new Object();
+
+	private final AccessorLayout layout;
+	private final Object delegate;
+	private final InjectorDataProvider dataProvider;
+	private volatile Slots slots;
+
+	MemoizingAccessorHandler(AccessorLayout layout, Object delegate, InjectorDataProvider dataProvider) {
+		assert null != layout;
+		assert null != delegate;
+		assert null != dataProvider;
+		this.layout = layout;
+		this.delegate = delegate;
+		this.dataProvider = dataProvider;
+		this.slots = new Slots(dataProvider.getGeneration(), layout.getSlotCount());
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		final int slot = layout.getSlot(method);
+		if (slot < 0) {
+			return invokeOther(proxy, method, args);
+		}
+		if (dataProvider.isTenantAware()) {
+			return resolve(slot, method, args);
+		}
+		final long generation = dataProvider.getGeneration();
+		Slots currentSlots = slots;
+		if (currentSlots.generation != generation) {
+			currentSlots = new Slots(generation, layout.getSlotCount());
+			slots = currentSlots;
+		}
+		final Object cachedValue = currentSlots.values.get(slot);
+		if (UNRESOLVED != cachedValue) {
+			return cachedValue;
+		}
+		final Object value = resolve(slot, method, args);
+		// Another invalidation may have occurred in the meantime, the value would be stale then
+		if (dataProvider.getGeneration() == generation) {
+			currentSlots.values.set(slot, value);
+		}
+		return value;
+	}
+
+	private Object resolve(int slot, Method method, Object[] args) throws Throwable {
+		final Class<?> primitiveType = layout.getPrimitiveType(slot);
+		final Object value = (null != primitiveType) ? dataProvider.lookupPrimitive(layout.getKey(slot), primitiveType) : null;
+		return (null != value) ? value : invokeDelegate(method, args);
+	}
+
+	private Object invokeOther(Object proxy, Method method, Object[] args) throws Throwable {
+		if (Object.class == method.getDeclaringClass()) {
+			final String name = method.getName();
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+		}
+		return invokeDelegate(method, args);
+	}
+
+	private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static final class Slots {
+		final long generation;
+		// A thread that does not see a value yet simply resolves it again
+		final AtomicReferenceArray<Object> values;
+
+		Slots(long generation, int size) {
+			this.generation = generation;
+			this.values = new AtomicReferenceArray<Object>(size);
+			for (int i = 0; i < size; ++i) {
+				values.lazySet(i, UNRESOLVED);
+			}
+		}
+	}
+
+}
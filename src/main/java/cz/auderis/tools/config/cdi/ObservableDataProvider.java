@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+/**
+ * Configuration data provider that reports changes of its data. When such a provider
+ * is used as a configuration source, cached information about the reported keys is
+ * discarded and a {@link ConfigurationKeyChanged} CDI event is fired for every configuration
+ * object type that uses some of the keys. Neither periodic reloading nor global invalidation
+ * is needed to pick up the changes.
+ */
+public interface ObservableDataProvider extends ConfigurationDataProvider {
+
+	void addChangeListener(ConfigurationChangeListener listener);
+
+	void removeChangeListener(ConfigurationChangeListener listener);
+
+}
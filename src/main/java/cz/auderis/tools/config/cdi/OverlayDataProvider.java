@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Immutable configuration data provider intended for many variants of a configuration that
+ * differ in a few keys. A variant is derived from a base provider by {@link #with(String, Object)},
+ * {@link #withAll(Map)} or {@link #without(String)}; the data are kept in a persistent map
+ * that shares unchanged parts with the base, so memory used by a variant grows with the number
+ * of its overrides, not with the size of the base configuration.
+ * <p>
+ * A variant is declared as a configuration source like any other provider, its priority
+ * relative to other sources is given by its {@link ConfigurationSource} qualifier:
+ * <pre>
+ * static final OverlayDataProvider BASE = OverlayDataProvider.of(loadDefaults());
+ *
+ * &#64;Produces &#64;ConfigurationSource(priority = 10)
+ * static ConfigurationDataProvider instanceConfiguration() {
+ *     return BASE.withAll(loadInstanceOverrides());
+ * }
+ * </pre>
+ * The provider deliberately does not implement {@link EnumerableDataProvider}: the key index
+ * would copy all keys of every variant into a separate map, which defeats the sharing.
+ * The provider is safe for concurrent use without any synchronization.
+ */
+public final class OverlayDataProvider implements ConfigurationDataLookup {
+
+	private static final OverlayDataProvider EMPTY = new OverlayDataProvider(PersistentKeyMap.EMPTY);
+
+	private final PersistentKeyMap data;
+
+	private OverlayDataProvider(PersistentKeyMap data) {
+		this.data = data;
+	}
+
+	/**
+	 * Returns a provider that contains no keys.
+	 */
+	public static OverlayDataProvider empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Creates a provider that contains the given keys and values.
+	 *
+	 * @param values raw values of configuration keys
+	 * @return new provider
+	 */
+	public static OverlayDataProvider of(Map<String, ?> values) {
+		return EMPTY.withAll(values);
+	}
+
+	/**
+	 * Returns a provider that contains the given key with the given value in addition
+	 * to (or instead of) the data of this provider. This provider is not modified.
+	 *
+	 * @param key configuration key
+	 * @param value raw value, may be {@code null}
+	 * @return derived provider, or this provider if it already contains the same value
+	 */
+	public OverlayDataProvider with(String key, Object value) {
+		if (null == key) {
+			throw new NullPointerException();
+		}
+		return derive(data.with(key, value));
+	}
+
+	/**
+	 * Returns a provider whose data are overridden by the given keys and values.
+	 * This provider is not modified.
+	 *
+	 * @param overrides raw values of configuration keys
+	 * @return derived provider
+	 */
+	public OverlayDataProvider withAll(Map<String, ?> overrides) {
+		if (null == overrides) {
+			throw new NullPointerException();
+		}
+		PersistentKeyMap newData = data;
+		for (final Map.Entry<String, ?> entry : overrides.entrySet()) {
+			final String key = entry.getKey();
+			if (null == key) {
+				throw new NullPointerException("null configuration key");
+			}
+			newData = newData.with(key, entry.getValue());
+		}
+		return derive(newData);
+	}
+
+	/**
+	 * Returns a provider that does not contain the given key, so that the key is searched
+	 * in configuration sources with lower priorities. This provider is not modified.
+	 *
+	 * @param key configuration key
+	 * @return derived provider, or this provider if it does not contain the key
+	 */
+	public OverlayDataProvider without(String key) {
+		if (null == key) {
+			throw new NullPointerException();
+		}
+		return derive(data.without(key));
+	}
+
+	private OverlayDataProvider derive(PersistentKeyMap newData) {
+		return (newData == data) ? this : new OverlayDataProvider(newData);
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		return ABSENT != data.get(key, ABSENT);
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		final Object value = data.get(key, ABSENT);
+		return (ABSENT != value) ? value : null;
+	}
+
+	@Override
+	public Object lookup(String key) {
+		return data.get(key, ABSENT);
+	}
+
+	/**
+	 * Returns an unmodifiable view of keys of the provider.
+	 */
+	public Collection<String> getKeys() {
+		return new AbstractCollection<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return data.keyIterator();
+			}
+
+			@Override
+			public int size() {
+				return data.size();
+			}
+
+			@Override
+			public boolean contains(Object key) {
+				return (key instanceof String) && containsKey((String) key);
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "OverlayDataProvider[" + data.size() + " keys]";
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable map of configuration keys to raw values, implemented as a hash array mapped trie.
+ * Every modification returns a new map that shares all unaffected nodes with the original one,
+ * so a map derived by a few modifications costs only the copied paths from the root to the
+ * modified entries (at most seven levels of nodes having up to 32 entries each).
+ * <p>
+ * A node keeps its entries in an array of pairs; a pair is either a key and its value,
+ * or {@code null} and a child node. Keys whose hash codes are equal are kept in collision nodes.
+ * {@code null} values are allowed.
+ */
+final class PersistentKeyMap {
+
+	static final PersistentKeyMap EMPTY = new PersistentKeyMap(BitmapNode.EMPTY, 0);
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private final Node root;
+	private final int size;
+
+	private PersistentKeyMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns value of the given key, or {@code notFound} if the map does not contain the key.
+	 */
+	Object get(String key, Object notFound) {
+		assert null != key;
+		return root.find(0, hash(key), key, notFound);
+	}
+
+	PersistentKeyMap with(String key, Object value) {
+		assert null != key;
+		final boolean[] added = new boolean[1];
+		final Node newRoot = root.with(0, hash(key), key, value, added);
+		if (newRoot == root) {
+			return this;
+		}
+		return new PersistentKeyMap(newRoot, added[0] ? size + 1 : size);
+	}
+
+	PersistentKeyMap without(String key) {
+		assert null != key;
+		final Node newRoot = root.without(0, hash(key), key);
+		if (newRoot == root) {
+			return this;
+		}
+		return new PersistentKeyMap((null != newRoot) ? newRoot : BitmapNode.EMPTY, size - 1);
+	}
+
+	Iterator<String> keyIterator() {
+		return new KeyIterator(root);
+	}
+
+	private static int hash(String key) {
+		final int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean same(Object value1, Object value2) {
+		return (value1 == value2) || ((null != value1) && value1.equals(value2));
+	}
+
+	private static Object[] copyAndSet(Object[] array, int index, Object item) {
+		final Object[] result = array.clone();
+		result[index] = item;
+		return result;
+	}
+
+	private static Object[] copyWithoutPair(Object[] array, int pairIndex) {
+		final Object[] result = new Object[array.length - 2];
+		System.arraycopy(array, 0, result, 0, 2 * pairIndex);
+		System.arraycopy(array, 2 * pairIndex + 2, result, 2 * pairIndex, result.length - 2 * pairIndex);
+		return result;
+	}
+
+	private static Node createNode(int shift, String key1, Object value1, int hash2, String key2, Object value2) {
+		final int hash1 = hash(key1);
+		if (hash1 == hash2) {
+			return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+		}
+		final boolean[] added = new boolean[1];
+		return BitmapNode.EMPTY
+				.with(shift, hash1, key1, value1, added)
+				.with(shift, hash2, key2, value2, added);
+	}
+
+	private abstract static class Node {
+		final Object[] array;
+
+		Node(Object[] array) {
+			this.array = array;
+		}
+
+		abstract Object find(int shift, int hash, String key, Object notFound);
+
+		abstract Node with(int shift, int hash, String key, Object value, boolean[] added);
+
+		/**
+		 * Returns the node without the given key, {@code null} if the node would be empty.
+		 */
+		abstract Node without(int shift, int hash, String key);
+	}
+
+	private static final class BitmapNode extends Node {
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+
+		BitmapNode(int bitmap, Object[] array) {
+			super(array);
+			this.bitmap = bitmap;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object find(int shift, int hash, String key, Object notFound) {
+			final int bit = 1 << ((hash >>> shift) & MASK);
+			if (0 == (bitmap & bit)) {
+				return notFound;
+			}
+			final int index = index(bit);
+			final Object keyOrNull = array[2 * index];
+			final Object valueOrNode = array[2 * index + 1];
+			if (null == keyOrNull) {
+				return ((Node) valueOrNode).find(shift + BITS, hash, key, notFound);
+			}
+			return key.equals(keyOrNull) ? valueOrNode : notFound;
+		}
+
+		@Override
+		Node with(int shift, int hash, String key, Object value, boolean[] added) {
+			final int bit = 1 << ((hash >>> shift) & MASK);
+			final int index = index(bit);
+			if (0 == (bitmap & bit)) {
+				final int pairCount = Integer.bitCount(bitmap);
+				final Object[] newArray = new Object[2 * (pairCount + 1)];
+				System.arraycopy(array, 0, newArray, 0, 2 * index);
+				newArray[2 * index] = key;
+				newArray[2 * index + 1] = value;
+				System.arraycopy(array, 2 * index, newArray, 2 * (index + 1), 2 * (pairCount - index));
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, newArray);
+			}
+			final Object keyOrNull = array[2 * index];
+			final Object valueOrNode = array[2 * index + 1];
+			if (null == keyOrNull) {
+				final Node newChild = ((Node) valueOrNode).with(shift + BITS, hash, key, value, added);
+				return (newChild == valueOrNode) ? this : new BitmapNode(bitmap, copyAndSet(array, 2 * index + 1, newChild));
+			} else if (key.equals(keyOrNull)) {
+				return same(value, valueOrNode) ? this : new BitmapNode(bitmap, copyAndSet(array, 2 * index + 1, value));
+			}
+			added[0] = true;
+			final Node newChild = createNode(shift + BITS, (String) keyOrNull, valueOrNode, hash, key, value);
+			final Object[] newArray = copyAndSet(array, 2 * index, null);
+			newArray[2 * index + 1] = newChild;
+			return new BitmapNode(bitmap, newArray);
+		}
+
+		@Override
+		Node without(int shift, int hash, String key) {
+			final int bit = 1 << ((hash >>> shift) & MASK);
+			if (0 == (bitmap & bit)) {
+				return this;
+			}
+			final int index = index(bit);
+			final Object keyOrNull = array[2 * index];
+			final Object valueOrNode = array[2 * index + 1];
+			if (null == keyOrNull) {
+				final Node newChild = ((Node) valueOrNode).without(shift + BITS, hash, key);
+				if (newChild == valueOrNode) {
+					return this;
+				} else if (null != newChild) {
+					return new BitmapNode(bitmap, copyAndSet(array, 2 * index + 1, newChild));
+				}
+			} else if (!key.equals(keyOrNull)) {
+				return this;
+			}
+			return (bitmap == bit) ? null : new BitmapNode(bitmap ^ bit, copyWithoutPair(array, index));
+		}
+	}
+
+	private static final class CollisionNode extends Node {
+		final int hash;
+
+		CollisionNode(int hash, Object[] array) {
+			super(array);
+			this.hash = hash;
+		}
+
+		private int findIndex(String key) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		Object find(int shift, int hash, String key, Object notFound) {
+			final int index = findIndex(key);
+			return (index >= 0) ? array[index + 1] : notFound;
+		}
+
+		@Override
+		Node with(int shift, int hash, String key, Object value, boolean[] added) {
+			if (hash != this.hash) {
+				// Keys with a different hash are placed next to this node in a new level
+				final BitmapNode level = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { null, this });
+				return level.with(shift, hash, key, value, added);
+			}
+			final int index = findIndex(key);
+			if (index >= 0) {
+				return same(value, array[index + 1]) ? this : new CollisionNode(hash, copyAndSet(array, index + 1, value));
+			}
+			final Object[] newArray = Arrays.copyOf(array, array.length + 2);
+			newArray[array.length] = key;
+			newArray[array.length + 1] = value;
+			added[0] = true;
+			return new CollisionNode(hash, newArray);
+		}
+
+		@Override
+		Node without(int shift, int hash, String key) {
+			final int index = findIndex(key);
+			if (index < 0) {
+				return this;
+			}
+			return (2 == array.length) ? null : new CollisionNode(hash, copyWithoutPair(array, index / 2));
+		}
+	}
+
+	private static final class KeyIterator implements Iterator<String> {
+		private Object[][] arrays;
+		private int[] positions;
+		private int depth;
+		private String nextKey;
+
+		KeyIterator(Node root) {
+			this.arrays = new Object[8][];
+			this.positions = new int[8];
+			push(root.array);
+			advance();
+		}
+
+		private void push(Object[] array) {
+			if (depth == arrays.length) {
+				arrays = Arrays.copyOf(arrays, 2 * depth);
+				positions = Arrays.copyOf(positions, 2 * depth);
+			}
+			arrays[depth] = array;
+			positions[depth] = 0;
+			++depth;
+		}
+
+		private void advance() {
+			nextKey = null;
+			while (depth > 0) {
+				final Object[] array = arrays[depth - 1];
+				final int position = positions[depth - 1];
+				if (position >= array.length) {
+					arrays[--depth] = null;
+				} else {
+					positions[depth - 1] = position + 2;
+					final Object keyOrNull = array[position];
+					if (null == keyOrNull) {
+						push(((Node) array[position + 1]).array);
+					} else {
+						nextKey = (String) keyOrNull;
+						return;
+					}
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return null != nextKey;
+		}
+
+		@Override
+		public String next() {
+			if (null == nextKey) {
+				throw new NoSuchElementException();
+			}
+			final String key = nextKey;
+			advance();
+			return key;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+/**
+ * Configuration data provider that is able to supply values of primitive types directly,
+ * e.g. because it keeps them already parsed. Memoizing accessors (see
+ * {@link ConfigurationInjectorSettings#MEMOIZING_ACCESSORS}) obtain values of {@code boolean},
+ * {@code int}, {@code long} and {@code double} accessor methods from such providers without
+ * the generic conversion of raw objects, provided that the method has no annotations that could
+ * alter its key or conversion. The value is then kept in the accessor, so that subsequent reads
+ * return it without any conversion or allocation.
+ * <p>
+ * The methods are called only for keys that the provider contains. If the value cannot be
+ * represented by the requested type, the method should throw {@link IllegalArgumentException}
+ * (such as {@link NumberFormatException}); the value is then obtained by the generic conversion.
+ */
+public interface PrimitiveDataProvider extends ConfigurationDataProvider {
+
+	boolean getBoolean(String key);
+
+	int getInt(String key);
+
+	long getLong(String key);
+
+	double getDouble(String key);
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checks files of {@link FileBackedDataProvider}s and runs the given reload action
+ * when a file is modified, created or deleted. Modification is detected by comparing the time
+ * of last modification and the length of every file.
+ */
+final class ProviderFileWatcher implements Runnable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProviderFileWatcher.class);
+
+	private final Runnable reloadAction;
+	private volatile Map<File, FileState> watchedFiles;
+	private ScheduledExecutorService executor;
+
+	ProviderFileWatcher(Runnable reloadAction) {
+		assert null != reloadAction;
+		this.reloadAction = reloadAction;
+		this.watchedFiles = Collections.emptyMap();
+	}
+
+	/**
+	 * Replaces the set of watched files; current state of the files
+	 * is considered unmodified.
+	 */
+	void watch(Collection<File> files) {
+		final Map<File, FileState> newFiles = new HashMap<File, FileState>(2 * files.size());
+		for (final File file : files) {
+			newFiles.put(file, new FileState(file));
+		}
+		this.watchedFiles = newFiles;
+	}
+
+	boolean isWatching() {
+		return !watchedFiles.isEmpty();
+	}
+
+	synchronized void start(long intervalMillis) {
+		assert intervalMillis > 0L;
+		if (null != executor) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("auderis-config-file-watcher-"));
+		executor.scheduleWithFixedDelay(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		LOG.debug("Watching " + watchedFiles.size() + " configuration files every " + intervalMillis + " ms");
+	}
+
+	synchronized void stop() {
+		if (null != executor) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		File changedFile = null;
+		for (final Map.Entry<File, FileState> watchedEntry : watchedFiles.entrySet()) {
+			final File file = watchedEntry.getKey();
+			if (!watchedEntry.getValue().equals(new FileState(file))) {
+				changedFile = file;
+				break;
+			}
+		}
+		if (null == changedFile) {
+			return;
+		}
+		LOG.info("Configuration file " + changedFile + " has changed, reloading configuration sources");
+		try {
+			reloadAction.run();
+		} catch (RuntimeException e) {
+			LOG.error("Failed to reload configuration sources after change of " + changedFile, e);
+			// Do not try again until the file changes once more
+			watch(watchedFiles.keySet());
+		}
+	}
+
+	private static final class FileState {
+		final long lastModified;
+		final long length;
+
+		FileState(File file) {
+			// Both values are 0 for a nonexistent file
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof FileState)) {
+				return false;
+			}
+			final FileState other = (FileState) obj;
+			return (lastModified == other.lastModified) && (length == other.length);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (lastModified ^ (lastModified >>> 32)) * 31 + (int) length;
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache that remembers which provider owns a configuration key. Keys that were
+ * not found in any provider are stored as negative entries with a limited lifetime.
+ * An entry can optionally memoize the raw value obtained from its owner, so that the value
+ * is evicted and invalidated together with the rest of the information about the key.
+ * <p>
+ * Reads are lock-free. When the size limit is exceeded after an insertion, the inserting
+ * thread evicts a batch of roughly the least recently used entries, whose access time is
+ * estimated from a small sample; eviction is skipped if another thread is already performing
+ * it, so no thread ever waits for the eviction lock. The size limit is therefore approximate:
+ * the cache may briefly exceed it by the number of concurrently inserting threads.
+ */
+final class ResolutionCache {
+
+	private static final int EVICTION_PERCENT = 25;
+	private static final int SAMPLE_SIZE = 64;
+
+	/**
+	 * Marker of an entry without a memoized value
+	 */
+	static final Object NO_VALUE = new Object();
+
+	private final ConcurrentMap<String, Entry> entries;
+	private final int maximumSize;
+	private final long negativeTtlNanos;
+	private final ReentrantLock evictionLock;
+
+	ResolutionCache(int maximumSize, long negativeTtlMillis) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("invalid maximum cache size " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.negativeTtlNanos = (negativeTtlMillis < 0L) ? -1L : TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+		this.entries = new ConcurrentHashMap<String, Entry>(Math.min(maximumSize, 1024));
+		this.evictionLock = new ReentrantLock();
+	}
+
+	/**
+	 * Returns the provider known to contain the given key, {@link InjectorDataProvider.DummyProvider#INSTANCE}
+	 * if the key is known to be missing, or {@code null} if there is no (valid) information about the key.
+	 */
+	ConfigurationDataProvider get(String key) {
+		final Entry entry = getEntry(key);
+		return (null != entry) ? entry.owner : null;
+	}
+
+	/**
+	 * Returns a valid cache entry for the given key, or {@code null} if there is none.
+	 */
+	Entry getEntry(String key) {
+		final Entry entry = entries.get(key);
+		if (null == entry) {
+			return null;
+		}
+		final long now = System.nanoTime();
+		if (entry.isExpired(now)) {
+			entries.remove(key, entry);
+			return null;
+		}
+		entry.lastAccess = now;
+		return entry;
+	}
+
+	Entry put(String key, ConfigurationDataProvider owner) {
+		assert null != owner;
+		final Entry entry = new Entry(owner, System.nanoTime(), 0L);
+		insert(key, entry);
+		return entry;
+	}
+
+	void putMissing(String key) {
+		if (0L == negativeTtlNanos) {
+			return;
+		}
+		final long now = System.nanoTime();
+		final long expiration = (negativeTtlNanos < 0L) ? 0L : now + negativeTtlNanos;
+		insert(key, new Entry(InjectorDataProvider.DummyProvider.INSTANCE, now, expiration));
+	}
+
+	void remove(String key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Returns keys of the entries whose owner is the given provider.
+	 */
+	List<String> getKeysOwnedBy(ConfigurationDataProvider owner) {
+		final List<String> keys = new ArrayList<String>();
+		for (final Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			if (owner == mapEntry.getValue().owner) {
+				keys.add(mapEntry.getKey());
+			}
+		}
+		return keys;
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	int getMaximumSize() {
+		return maximumSize;
+	}
+
+	private void insert(String key, Entry entry) {
+		entries.put(key, entry);
+		if ((entries.size() > maximumSize) && evictionLock.tryLock()) {
+			try {
+				// Entries inserted by threads that skipped the eviction are evicted as well
+				boolean evicted;
+				do {
+					evicted = evictLeastRecentlyUsed();
+				} while (evicted && (entries.size() > maximumSize));
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Evicts expired entries and a batch of entries accessed before a cut-off time,
+	 * which is estimated from a sample of entries, in a single pass over the cache.
+	 *
+	 * @return {@code true} if some entry was evicted
+	 */
+	private boolean evictLeastRecentlyUsed() {
+		final int currentSize = entries.size();
+		// Evict a batch of entries so that the pass over the cache is amortized
+		final int targetSize = maximumSize - (maximumSize * EVICTION_PERCENT / 100);
+		int toRemove = currentSize - targetSize;
+		if (toRemove <= 0) {
+			return false;
+		}
+		final long cutoff = estimateCutoff(toRemove, currentSize);
+		final long now = System.nanoTime();
+		boolean evicted = false;
+		for (final Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			final Entry entry = mapEntry.getValue();
+			if ((entry.isExpired(now) || (entry.lastAccess - cutoff <= 0L)) && entries.remove(mapEntry.getKey(), entry)) {
+				evicted = true;
+				if (--toRemove <= 0) {
+					break;
+				}
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Returns access time that is exceeded by all but the given number of entries, approximately.
+	 * Iteration order of the map does not depend on access times, so the first entries
+	 * are a fair sample.
+	 */
+	private long estimateCutoff(int toRemove, int currentSize) {
+		final long[] sample = new long[Math.min(SAMPLE_SIZE, currentSize)];
+		int count = 0;
+		for (final Entry entry : entries.values()) {
+			if (count == sample.length) {
+				break;
+			}
+			sample[count++] = entry.lastAccess;
+		}
+		if (0 == count) {
+			return System.nanoTime();
+		}
+		Arrays.sort(sample, 0, count);
+		final int index = (int) Math.min(count - 1, (long) count * toRemove / currentSize);
+		return sample[index];
+	}
+
+	static final class Entry {
+		final ConfigurationDataProvider owner;
+		final long expiration;
+		// Updated racily by readers; the resulting LRU order is approximate by design
+		long lastAccess;
+		volatile Object value;
+
+		Entry(ConfigurationDataProvider owner, long created, long expiration) {
+			this.owner = owner;
+			this.lastAccess = created;
+			this.expiration = expiration;
+			this.value = NO_VALUE;
+		}
+
+		boolean isMissing() {
+			return InjectorDataProvider.DummyProvider.INSTANCE == owner;
+		}
+
+		boolean isExpired(long now) {
+			return (0L != expiration) && (now - expiration >= 0L);
+		}
+	}
+
+}
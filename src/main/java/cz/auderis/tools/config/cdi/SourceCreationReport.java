@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of creation of configuration sources at bootstrap or during a reload: the time taken
+ * by every source, in the order of source priorities, and failures of sources that could not
+ * be created. The report is logged and remains available through
+ * {@link ConfigurationInjectorExtension#getSourceCreationReport()}.
+ */
+public final class SourceCreationReport {
+
+	/**
+	 * Creation of a single configuration source.
+	 */
+	public static final class Entry {
+		private final String source;
+		private final int priority;
+		private final long durationNanos;
+		private final Throwable failure;
+
+		Entry(String source, int priority, long durationNanos, Throwable failure) {
+			this.source = source;
+			this.priority = priority;
+			this.durationNanos = durationNanos;
+			this.failure = failure;
+		}
+
+		/**
+		 * Returns description of the bean that produces the source.
+		 */
+		public String getSource() {
+			return source;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		/**
+		 * Returns the reason why the source could not be created, or {@code null} if it was created.
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		public boolean isFailed() {
+			return null != failure;
+		}
+	}
+
+	private final List<Entry> entries;
+	private final long totalNanos;
+	private final int threadCount;
+
+	SourceCreationReport(List<Entry> entries, long totalNanos, int threadCount) {
+		assert null != entries;
+		this.entries = Collections.unmodifiableList(new ArrayList<Entry>(entries));
+		this.totalNanos = totalNanos;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Returns creation of individual sources, in the order of decreasing priority.
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns time elapsed from start of creation of the first source until all sources were created.
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * Returns number of threads that created the sources.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public boolean hasFailures() {
+		for (final Entry entry : entries) {
+			if (entry.isFailed()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder str = new StringBuilder(64 * (1 + entries.size()));
+		str.append("Created ").append(entries.size()).append(" configuration sources in ");
+		str.append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append(" ms using ").append(threadCount);
+		str.append((1 == threadCount) ? " thread" : " threads");
+		for (final Entry entry : entries) {
+			str.append("\n  [priority ").append(entry.priority).append("] ").append(entry.source);
+			final long millis = TimeUnit.NANOSECONDS.toMillis(entry.durationNanos);
+			if (entry.isFailed()) {
+				str.append(" - FAILED after ").append(millis).append(" ms: ").append(entry.failure);
+			} else {
+				str.append(" - ").append(millis).append(" ms");
+			}
+		}
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import javax.enterprise.context.spi.CreationalContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration source instances created together, i.e. at bootstrap or by a single reload.
+ * Instances are destroyed (by releasing their creational contexts) when they are replaced
+ * by a reload, but not before all {@link ConfigurationSnapshot snapshots} that use them are closed.
+ */
+final class SourceGeneration {
+
+	private final List<CreationalContext<?>> contexts;
+	private int pinCount;
+	private boolean retired;
+	private boolean released;
+
+	SourceGeneration(List<? extends CreationalContext<?>> contexts) {
+		assert null != contexts;
+		this.contexts = new ArrayList<CreationalContext<?>>(contexts);
+	}
+
+	/**
+	 * Destroys instances created within the given contexts.
+	 */
+	static void release(List<? extends CreationalContext<?>> contexts) {
+		for (final CreationalContext<?> context : contexts) {
+			context.release();
+		}
+	}
+
+	/**
+	 * Prevents destruction of the sources until {@link #unpin()} is called. Must not be called
+	 * after the sources were replaced.
+	 */
+	synchronized void pin() {
+		assert !retired;
+		++pinCount;
+	}
+
+	void unpin() {
+		synchronized (this) {
+			assert pinCount > 0;
+			if ((--pinCount > 0) || !retired || released) {
+				return;
+			}
+			released = true;
+		}
+		release(contexts);
+	}
+
+	/**
+	 * Marks the sources as replaced; they are destroyed as soon as they are not pinned.
+	 */
+	void retire() {
+		synchronized (this) {
+			retired = true;
+			if ((pinCount > 0) || released) {
+				return;
+			}
+			released = true;
+		}
+		release(contexts);
+	}
+
+	synchronized boolean isReleased() {
+		return released;
+	}
+
+}
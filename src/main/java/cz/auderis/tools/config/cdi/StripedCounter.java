@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that can be incremented by many threads with low contention. Every thread
+ * updates one of several cells (selected by the thread identifier), and the cells
+ * are summed when the value is read. Cells are placed on separate cache lines.
+ */
+final class StripedCounter {
+
+	/**
+	 * Distance between used cells, in order to avoid false sharing
+	 */
+	private static final int CELL_SPACING = 8;
+
+	static final int STRIPES = stripeCount();
+
+	private final AtomicLongArray cells;
+
+	StripedCounter() {
+		this.cells = new AtomicLongArray(STRIPES * CELL_SPACING);
+	}
+
+	private static int stripeCount() {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while ((stripes < processors) && (stripes < 64)) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	/**
+	 * Returns the stripe that should be updated by the current thread.
+	 */
+	static int currentStripe() {
+		final long id = Thread.currentThread().getId();
+		final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return (hash >>> 16) & (STRIPES - 1);
+	}
+
+	void increment() {
+		add(1L);
+	}
+
+	void add(long delta) {
+		cells.addAndGet(currentStripe() * CELL_SPACING, delta);
+	}
+
+	long get() {
+		long sum = 0L;
+		for (int i = 0; i < STRIPES; ++i) {
+			sum += cells.get(i * CELL_SPACING);
+		}
+		return sum;
+	}
+
+	void reset() {
+		for (int i = 0; i < STRIPES; ++i) {
+			cells.set(i * CELL_SPACING, 0L);
+		}
+	}
+
+}
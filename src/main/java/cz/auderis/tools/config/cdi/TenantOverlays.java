@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configuration sources of tenants determined by a {@link TenantResolver}. Sources of every tenant
+ * are wrapped by their own {@link InjectorDataProvider}, so that each tenant has an isolated
+ * resolution cache of a limited size. Overlays of at most {@code tenantLimit} tenants are kept;
+ * when a new tenant exceeds the limit, the overlay of the least recently active tenant
+ * is discarded and built again when needed.
+ * <p>
+ * Activity is tracked by a coarse clock of about a millisecond, so that reads of a tenant
+ * do not contend on a shared counter and write the time of access only once per tick;
+ * tenants active within the same tick are discarded in the order of their creation.
+ */
+final class TenantOverlays {
+
+	private final InjectorDataProvider sharedProvider;
+	private final TenantResolver resolver;
+	private final int tenantLimit;
+	private final int tenantCacheSize;
+	private final ConcurrentMap<String, Slot> slotByTenant;
+	private final AtomicLong creationCounter;
+
+	TenantOverlays(InjectorDataProvider sharedProvider, TenantResolver resolver, int tenantLimit, int tenantCacheSize) {
+		assert null != sharedProvider;
+		assert null != resolver;
+		assert tenantLimit > 0;
+		this.sharedProvider = sharedProvider;
+		this.resolver = resolver;
+		this.tenantLimit = tenantLimit;
+		this.tenantCacheSize = tenantCacheSize;
+		this.slotByTenant = new ConcurrentHashMap<String, Slot>();
+		this.creationCounter = new AtomicLong();
+	}
+
+	TenantResolver getResolver() {
+		return resolver;
+	}
+
+	/**
+	 * Returns provider of sources of the current tenant, or {@code null} if there is no current
+	 * tenant or it has no sources of its own.
+	 */
+	InjectorDataProvider getCurrentOverlay() {
+		final String tenant = resolver.getCurrentTenant();
+		if (null == tenant) {
+			return null;
+		}
+		final long accessTime = currentTick();
+		Slot slot = slotByTenant.get(tenant);
+		if (null == slot) {
+			// Benign race, an overlay created concurrently for the same tenant is simply replaced
+			slot = new Slot(createOverlay(tenant), accessTime, creationCounter.incrementAndGet());
+			slotByTenant.put(tenant, slot);
+			if (slotByTenant.size() > tenantLimit) {
+				evictLeastRecentlyActive();
+			}
+		} else if (slot.lastAccess != accessTime) {
+			slot.lastAccess = accessTime;
+		}
+		return slot.overlay;
+	}
+
+	private static long currentTick() {
+		// Units of 2^20 ns, i.e. roughly a millisecond
+		return System.nanoTime() >> 20;
+	}
+
+	private InjectorDataProvider createOverlay(String tenant) {
+		final List<ConfigurationDataProvider> sources = resolver.getTenantSources(tenant);
+		if ((null == sources) || sources.isEmpty()) {
+			return null;
+		}
+		return sharedProvider.createOverlay(sources, tenantCacheSize);
+	}
+
+	private synchronized void evictLeastRecentlyActive() {
+		// Only tenants beyond the limit are looked for, so the scan is rare
+		while (slotByTenant.size() > tenantLimit) {
+			Map.Entry<String, Slot> eldest = null;
+			for (final Map.Entry<String, Slot> entry : slotByTenant.entrySet()) {
+				if ((null == eldest) || entry.getValue().isLessRecentThan(eldest.getValue())) {
+					eldest = entry;
+				}
+			}
+			if (null == eldest) {
+				return;
+			}
+			slotByTenant.remove(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	int getTenantCount() {
+		return slotByTenant.size();
+	}
+
+	/**
+	 * Discards cached information about the given keys in sources of all active tenants.
+	 */
+	void invalidate(Collection<String> keys) {
+		for (final Slot slot : slotByTenant.values()) {
+			if (null != slot.overlay) {
+				slot.overlay.invalidate(keys);
+			}
+		}
+	}
+
+	void discard(String tenant) {
+		slotByTenant.remove(tenant);
+	}
+
+	void discardAll() {
+		slotByTenant.clear();
+	}
+
+	/**
+	 * Overlay of a tenant, {@code null} if the tenant has no sources, with the tick of the last access
+	 */
+	private static final class Slot {
+		final InjectorDataProvider overlay;
+		final long creationOrder;
+		volatile long lastAccess;
+
+		Slot(InjectorDataProvider overlay, long lastAccess, long creationOrder) {
+			this.overlay = overlay;
+			this.creationOrder = creationOrder;
+			this.lastAccess = lastAccess;
+		}
+
+		boolean isLessRecentThan(Slot other) {
+			final long tickDifference = lastAccess - other.lastAccess;
+			return (tickDifference < 0L) || ((0L == tickDifference) && (creationOrder < other.creationOrder));
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.List;
+
+/**
+ * Determines the tenant (or profile) on whose behalf configuration data are read and supplies
+ * configuration sources specific to the tenant. Sources of a tenant form an overlay: keys are
+ * searched in them first, keys they do not contain are taken from the shared configuration
+ * sources. The shared sources are never copied, so any number of tenants can use them.
+ * <p>
+ * The resolver is set by {@link ConfigurationInjectorExtension#setTenantResolver(TenantResolver)}.
+ * It is consulted on every read of a configuration value, so {@link #getCurrentTenant()}
+ * should be cheap, e.g. a read of a thread-local variable that is set for each request.
+ */
+public interface TenantResolver {
+
+	/**
+	 * Returns identifier of the tenant of the current context.
+	 *
+	 * @return tenant identifier, or {@code null} if only the shared sources are to be used
+	 */
+	String getCurrentTenant();
+
+	/**
+	 * Returns configuration sources specific to the given tenant. The method is called
+	 * when the tenant is first encountered and again after its cached data were discarded
+	 * (see {@link ConfigurationInjectorSettings#TENANT_LIMIT}).
+	 *
+	 * @param tenant tenant identifier
+	 * @return sources in the order of decreasing priority, possibly empty
+	 */
+	List<ConfigurationDataProvider> getTenantSources(String tenant);
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.tools.config.ConfigurationDataProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simple thread-safe data provider backed by a map, usable in tests
+ * where Mockito stubs are not suitable (e.g. with concurrent access).
+ */
+class MapDataProvider implements ConfigurationDataProvider {
+
+	final Map<String, Object> data;
+	final AtomicInteger containsKeyCalls;
+	final AtomicInteger getRawObjectCalls;
+
+	MapDataProvider(Object... keysAndValues) {
+		assert 0 == keysAndValues.length % 2;
+		this.data = new ConcurrentHashMap<String, Object>();
+		this.containsKeyCalls = new AtomicInteger();
+		this.getRawObjectCalls = new AtomicInteger();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			data.put((String) keysAndValues[i], keysAndValues[i + 1]);
+		}
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		containsKeyCalls.incrementAndGet();
+		return data.containsKey(key);
+	}
+
+	@Override
+	public Object getRawObject(String key) {
+		getRawObjectCalls.incrementAndGet();
+		return data.get(key);
+	}
+
+	/**
+	 * Variant of the provider that supports single-pass lookups.
+	 */
+	static class WithLookup extends MapDataProvider implements ConfigurationDataLookup {
+		final AtomicInteger lookupCalls;
+
+		WithLookup(Object... keysAndValues) {
+			super(keysAndValues);
+			this.lookupCalls = new AtomicInteger();
+		}
+
+		@Override
+		public Object lookup(String key) {
+			lookupCalls.incrementAndGet();
+			final Object value = data.get(key);
+			return (null != value) ? value : ABSENT;
+		}
+	}
+
+	/**
+	 * Variant of the provider that retrieves several keys at once.
+	 */
+	static class Batch extends MapDataProvider implements BatchDataProvider {
+		final List<Collection<String>> batches;
+
+		Batch(Object... keysAndValues) {
+			super(keysAndValues);
+			this.batches = new CopyOnWriteArrayList<Collection<String>>();
+		}
+
+		@Override
+		public Map<String, Object> getRawObjects(Collection<String> keys) {
+			batches.add(new ArrayList<String>(keys));
+			final Map<String, Object> result = new HashMap<String, Object>();
+			for (final String key : keys) {
+				if (data.containsKey(key)) {
+					result.put(key, data.get(key));
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Variant of the provider that supplies primitive values parsed from text values directly.
+	 */
+	static class Primitive extends MapDataProvider implements PrimitiveDataProvider {
+		final AtomicInteger primitiveCalls;
+
+		Primitive(Object... keysAndValues) {
+			super(keysAndValues);
+			this.primitiveCalls = new AtomicInteger();
+		}
+
+		@Override
+		public boolean getBoolean(String key) {
+			primitiveCalls.incrementAndGet();
+			return Boolean.parseBoolean(getText(key));
+		}
+
+		@Override
+		public int getInt(String key) {
+			primitiveCalls.incrementAndGet();
+			return Integer.parseInt(getText(key));
+		}
+
+		@Override
+		public long getLong(String key) {
+			primitiveCalls.incrementAndGet();
+			return Long.parseLong(getText(key));
+		}
+
+		@Override
+		public double getDouble(String key) {
+			primitiveCalls.incrementAndGet();
+			return Double.parseDouble(getText(key));
+		}
+
+		private String getText(String key) {
+			final Object value = data.get(key);
+			if (!(value instanceof String)) {
+				throw new IllegalArgumentException("not a text value: " + value);
+			}
+			return (String) value;
+		}
+	}
+
+	/**
+	 * Variant of the provider that reports changes of its data.
+	 */
+	static class Observable extends MapDataProvider implements ObservableDataProvider {
+		final List<ConfigurationChangeListener> listeners;
+
+		Observable(Object... keysAndValues) {
+			super(keysAndValues);
+			this.listeners = new CopyOnWriteArrayList<ConfigurationChangeListener>();
+		}
+
+		@Override
+		public void addChangeListener(ConfigurationChangeListener listener) {
+			listeners.add(listener);
+		}
+
+		@Override
+		public void removeChangeListener(ConfigurationChangeListener listener) {
+			listeners.remove(listener);
+		}
+
+		void update(String key, Object value) {
+			data.put(key, value);
+			for (final ConfigurationChangeListener listener : listeners) {
+				listener.keysChanged(this, Collections.singleton(key));
+			}
+		}
+	}
+
+	/**
+	 * Variant of the provider that is able to list its keys.
+	 */
+	static class Enumerable extends MapDataProvider implements EnumerableDataProvider {
+		Enumerable(Object... keysAndValues) {
+			super(keysAndValues);
+		}
+
+		@Override
+		public Collection<String> getKeys() {
+			return data.keySet();
+		}
+	}
+
+}
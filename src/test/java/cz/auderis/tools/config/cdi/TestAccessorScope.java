@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.util.AnnotationLiteral;
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestAccessorScope {
+
+	interface TestCfgObject {
+		String getName();
+	}
+
+	// Client proxies of custom beans are defined outside of this package
+	@ApplicationScoped
+	public interface AppScopedCfgObject {
+		String getName();
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider("name", "xyz");
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject otherCfg;
+
+	@Inject
+	@ConfigurationObject
+	AppScopedCfgObject appCfg;
+
+	@Inject
+	BeanManager beanManager;
+
+	@BeforeClass
+	public static void enableSharedAccessors() {
+		System.setProperty(ConfigurationInjectorSettings.ACCESSOR_SCOPE, "shared");
+	}
+
+	@AfterClass
+	public static void resetSharedAccessors() {
+		System.clearProperty(ConfigurationInjectorSettings.ACCESSOR_SCOPE);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInjectSharedAccessor() throws Exception {
+		assertThat(cfg, sameInstance(otherCfg));
+		assertThat(cfg.getName(), is("xyz"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldUseScopeDeclaredOnInterface() throws Exception {
+		// Given
+		final AnnotationLiteral<ConfigurationObject> cfgQualifier = new AnnotationLiteral<ConfigurationObject>() { };
+
+		// When
+		final Bean<?> bean = beanManager.resolve(beanManager.getBeans(AppScopedCfgObject.class, cfgQualifier));
+
+		// Then
+		assertThat(bean.getScope(), equalTo((Object) ApplicationScoped.class));
+		assertThat(appCfg.getName(), is("xyz"));
+	}
+
+}
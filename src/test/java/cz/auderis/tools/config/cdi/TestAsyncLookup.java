@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestAsyncLookup {
+
+	private ExecutorService executor;
+
+	@Before
+	public void createExecutor() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldPreferValueOfHigherPriorityProvider() throws Exception {
+		// Given
+		final BlockingDataProvider slow = new BlockingDataProvider("a", "slow");
+		final MapDataProvider fast = new MapDataProvider("a", "fast");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(slow, fast));
+
+		// When
+		final Future<Object> value = provider.lookupAsync("a", executor, null);
+		final boolean doneBeforeRelease = waitForFastProvider(fast, value);
+		slow.release.countDown();
+
+		// Then
+		assertThat(doneBeforeRelease, is(false));
+		assertThat(value.get(5L, TimeUnit.SECONDS), is((Object) "slow"));
+		assertThat(provider.getRawObject("a"), is((Object) "slow"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldTakeLowerPriorityValueWhenHigherProvidersLackKey() throws Exception {
+		// Given
+		final BlockingDataProvider slow = new BlockingDataProvider("b", "slow");
+		final MapDataProvider fast = new MapDataProvider("a", "fast");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(slow, fast));
+
+		// When
+		final Future<Object> value = provider.lookupAsync("a", executor, null);
+		slow.release.countDown();
+
+		// Then
+		assertThat(value.get(5L, TimeUnit.SECONDS), is((Object) "fast"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotifyCallbackAboutMissingKey() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(new MapDataProvider("a", "a1"), new MapDataProvider("b", "b2")));
+		final AtomicReference<Object> reported = new AtomicReference<Object>();
+		final CountDownLatch callbackCalled = new CountDownLatch(1);
+		final LookupCallback callback = new LookupCallback() {
+			@Override
+			public void lookupCompleted(String key, Object value) {
+				reported.set(value);
+				callbackCalled.countDown();
+			}
+
+			@Override
+			public void lookupFailed(String key, Throwable cause) {
+				reported.set(cause);
+				callbackCalled.countDown();
+			}
+		};
+
+		// When
+		provider.lookupAsync("x", executor, callback);
+		final boolean called = callbackCalled.await(5L, TimeUnit.SECONDS);
+		final Future<Object> cachedResult = provider.lookupAsync("x", executor, null);
+
+		// Then
+		assertThat(called, is(true));
+		assertThat(reported.get(), sameInstance(ConfigurationDataLookup.ABSENT));
+		assertThat(cachedResult.isDone(), is(true));
+		assertThat(cachedResult.get(), sameInstance(ConfigurationDataLookup.ABSENT));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReportFailureOfProvider() throws Exception {
+		// Given
+		final MapDataProvider failing = new MapDataProvider() {
+			@Override
+			public boolean containsKey(String key) {
+				throw new IllegalStateException("Source not available");
+			}
+		};
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(failing, new MapDataProvider("a", "a2")));
+
+		// When
+		final Future<Object> value = provider.lookupAsync("a", executor, null);
+
+		// Then
+		try {
+			value.get(5L, TimeUnit.SECONDS);
+			fail("Failure expected");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		}
+	}
+
+	private static boolean waitForFastProvider(MapDataProvider fast, Future<Object> value) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000L;
+		while ((0 == fast.containsKeyCalls.get()) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(1L);
+		}
+		Thread.sleep(20L);
+		return value.isDone();
+	}
+
+	/**
+	 * Provider that does not answer until it is released
+	 */
+	static class BlockingDataProvider extends MapDataProvider {
+		final CountDownLatch release = new CountDownLatch(1);
+
+		BlockingDataProvider(Object... keysAndValues) {
+			super(keysAndValues);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.containsKey(key);
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestChangeNotification {
+
+	interface TestCfgObject {
+		String getName();
+		String getAdded();
+	}
+
+	interface AnnotatedCfgObject {
+		@RenamedKey
+		String getTitle();
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface RenamedKey {
+	}
+
+	static final List<ConfigurationKeyChanged> receivedEvents = new CopyOnWriteArrayList<ConfigurationKeyChanged>();
+
+	@Produces
+	@ConfigurationSource
+	static EnumerableObservable provider = new EnumerableObservable("name", "first", "other", "x");
+
+	static volatile LockingObservable lockingProvider;
+
+	@Produces
+	@ConfigurationSource(priority = -1)
+	static LockingObservable createLockingProvider() {
+		lockingProvider = new LockingObservable();
+		return lockingProvider;
+	}
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	@ConfigurationObject
+	AnnotatedCfgObject annotatedCfg;
+
+	@BeforeClass
+	public static void enableValueCache() {
+		System.setProperty(ConfigurationInjectorSettings.VALUE_CACHE, "true");
+	}
+
+	@AfterClass
+	public static void resetValueCache() {
+		System.clearProperty(ConfigurationInjectorSettings.VALUE_CACHE);
+	}
+
+	void keyChanged(@Observes ConfigurationKeyChanged event) {
+		receivedEvents.add(event);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInvalidateReportedKeysAndNotifyObservers() throws Exception {
+		// Given
+		receivedEvents.clear();
+		assertThat(cfg.getName(), is("first"));
+
+		// When
+		provider.update("name", "second");
+
+		// Then
+		assertThat(cfg.getName(), is("second"));
+		final List<ConfigurationKeyChanged> events = getEvents(TestCfgObject.class);
+		assertThat(events, hasSize(1));
+		final ConfigurationKeyChanged event = events.get(0);
+		assertThat(event.getConfigurationClass(), equalTo((Object) TestCfgObject.class));
+		assertThat(event.getKeys(), contains("name"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotNotifyAboutUnusedKeys() throws Exception {
+		// Given
+		receivedEvents.clear();
+
+		// When
+		provider.update("other", "y");
+
+		// Then
+		assertThat(getEvents(TestCfgObject.class), is(empty()));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotifyObjectsWithAnnotatedAccessorsAboutAllKeys() throws Exception {
+		// Given
+		receivedEvents.clear();
+
+		// When
+		provider.update("title", "renamed");
+
+		// Then
+		final List<ConfigurationKeyChanged> events = getEvents(AnnotatedCfgObject.class);
+		assertThat(events, hasSize(1));
+		assertThat(events.get(0).getKeys(), contains("title"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFindKeyAddedToIndexedSource() throws Exception {
+		// Given
+		final String valueBeforeUpdate = cfg.getAdded();
+
+		// When
+		provider.update("added", "new");
+
+		// Then
+		assertThat(valueBeforeUpdate, is(nullValue()));
+		assertThat(cfg.getAdded(), is("new"));
+	}
+
+	@Test(timeout = 10000L)
+	@Category(UnitTest.class)
+	public void shouldNotDeadlockWhenSourceNotifiesDuringReload() throws Exception {
+		// Given
+		final LockingObservable source = lockingProvider;
+		final CountDownLatch notificationStarted = new CountDownLatch(1);
+		final Thread notifier = new Thread() {
+			@Override
+			public void run() {
+				source.updateSlowly("locked", "value", notificationStarted);
+			}
+		};
+		notifier.start();
+		notificationStarted.await();
+
+		// When
+		extension.reloadProviders();
+		notifier.join();
+
+		// Then
+		assertThat(lockingProvider, is(not(sameInstance(source))));
+		assertThat(source.listeners, is(empty()));
+	}
+
+	private static List<ConfigurationKeyChanged> getEvents(Class<?> cfgClass) {
+		final List<ConfigurationKeyChanged> events = new ArrayList<ConfigurationKeyChanged>();
+		for (final ConfigurationKeyChanged event : receivedEvents) {
+			if (cfgClass == event.getConfigurationClass()) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Source that holds its lock while notifying listeners
+	 */
+	static class LockingObservable extends MapDataProvider.Observable {
+		@Override
+		public synchronized void addChangeListener(ConfigurationChangeListener listener) {
+			super.addChangeListener(listener);
+		}
+
+		@Override
+		public synchronized void removeChangeListener(ConfigurationChangeListener listener) {
+			super.removeChangeListener(listener);
+		}
+
+		/**
+		 * Notifies listeners while holding the lock of the source, after a delay that lets
+		 * another thread start using the source.
+		 */
+		synchronized void updateSlowly(String key, Object value, CountDownLatch started) {
+			started.countDown();
+			try {
+				Thread.sleep(200L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			update(key, value);
+		}
+	}
+
+	/**
+	 * Source that both lists its keys and reports their changes
+	 */
+	static class EnumerableObservable extends MapDataProvider.Observable implements EnumerableDataProvider {
+		EnumerableObservable(Object... keysAndValues) {
+			super(keysAndValues);
+		}
+
+		@Override
+		public Collection<String> getKeys() {
+			return data.keySet();
+		}
+	}
+
+}
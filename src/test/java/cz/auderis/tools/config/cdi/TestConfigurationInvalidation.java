@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.event.Event;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestConfigurationInvalidation {
+
+	interface TestCfgObject {
+		String getName();
+		String getAlias();
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider();
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	Event<ConfigurationChanged> changeEvent;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableValueCache() {
+		System.setProperty(ConfigurationInjectorSettings.VALUE_CACHE, "true");
+	}
+
+	@AfterClass
+	public static void resetValueCache() {
+		System.clearProperty(ConfigurationInjectorSettings.VALUE_CACHE);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInvalidateKeysOnEvent() throws Exception {
+		// Given
+		provider.data.put("name", "first");
+		provider.data.put("alias", "firstAlias");
+		cfg.getName();
+		cfg.getAlias();
+		provider.data.put("name", "second");
+		provider.data.put("alias", "secondAlias");
+
+		// When
+		final String cachedName = cfg.getName();
+		changeEvent.fire(new ConfigurationChanged("name"));
+		final String changedName = cfg.getName();
+		final String cachedAlias = cfg.getAlias();
+
+		// Then
+		assertThat(cachedName, is("first"));
+		assertThat(changedName, is("second"));
+		assertThat(cachedAlias, is("firstAlias"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInvalidateAllKeysProgrammatically() throws Exception {
+		// Given
+		provider.data.put("name", "first");
+		cfg.getName();
+		provider.data.put("name", "second");
+
+		// When
+		final String cachedName = cfg.getName();
+		extension.invalidateAll();
+		final String changedName = cfg.getName();
+
+		// Then
+		assertThat(cachedName, is("first"));
+		assertThat(changedName, is("second"));
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestConfigurationMetrics {
+
+	interface TestCfgObject {
+		String getName();
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider("name", "first");
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableMetrics() {
+		System.setProperty(ConfigurationInjectorSettings.METRICS, "true");
+	}
+
+	@AfterClass
+	public static void resetMetrics() {
+		System.clearProperty(ConfigurationInjectorSettings.METRICS);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldPublishStatisticsAsMBean() throws Exception {
+		// Given
+		final ConfigurationStatisticsMBean statistics = extension.getStatistics();
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		// When
+		cfg.getName();
+		cfg.getName();
+
+		// Then
+		final Set<ObjectName> names = server.queryNames(new ObjectName("cz.auderis.config:type=ConfigurationStatistics,*"), null);
+		assertThat(names, hasSize(1));
+		final Object lookupCount = server.getAttribute(names.iterator().next(), "LookupCount");
+		assertThat((Long) lookupCount, is(statistics.getLookupCount()));
+		assertThat(statistics.getResolvedCount(), is(1L));
+		assertThat(statistics.getCachedOwnerCount(), greaterThan(0L));
+		assertThat(statistics.getAccessorCreationCount(), greaterThan(0L));
+		assertThat(statistics.getBootstrapTimings().length, greaterThan(0));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldRecordOutcomesAndProviderLatencies() throws Exception {
+		// Given
+		final ConfigurationStatistics statistics = new ConfigurationStatistics();
+		final InjectorDataProvider dataProvider = new InjectorDataProvider(16, -1L, true, 0, statistics);
+		final MapDataProvider source = new MapDataProvider("present", "value");
+		dataProvider.addDelegate(source);
+
+		// When
+		dataProvider.getRawObject("present");
+		dataProvider.getRawObject("present");
+		dataProvider.getRawObject("missing");
+		dataProvider.getRawObject("missing");
+
+		// Then
+		assertThat(statistics.getCount(LookupOutcome.RESOLVED), is(1L));
+		assertThat(statistics.getCount(LookupOutcome.CACHED_VALUE), is(1L));
+		assertThat(statistics.getCount(LookupOutcome.NOT_FOUND), is(1L));
+		assertThat(statistics.getCount(LookupOutcome.CACHED_ABSENT), is(1L));
+		assertThat(statistics.getCacheHitRatio(), is(0.5));
+		assertThat(statistics.getNegativeHitRatio(), is(0.25));
+		assertThat(statistics.getLatencyHistogram(source).getCount(), is(2L));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldRecordLatenciesOfSourcesOfSameClassSeparately() throws Exception {
+		// Given
+		final ConfigurationStatistics statistics = new ConfigurationStatistics();
+		final InjectorDataProvider dataProvider = new InjectorDataProvider(16, -1L, false, 0, statistics);
+		final MapDataProvider firstSource = new MapDataProvider("first", "value");
+		final MapDataProvider secondSource = new MapDataProvider("second", "value");
+		final Map<ConfigurationDataProvider, String> sourceNames = new HashMap<ConfigurationDataProvider, String>();
+		sourceNames.put(firstSource, ConfigurationStatistics.getSourceName(10, "firstSource"));
+		statistics.setSourceNames(sourceNames);
+		dataProvider.addDelegate(firstSource);
+		dataProvider.addDelegate(secondSource);
+
+		// When
+		dataProvider.getRawObject("first");
+		dataProvider.getRawObject("second");
+
+		// Then
+		assertThat(statistics.getLatencyHistogram(firstSource).getCount(), greaterThan(0L));
+		assertThat(statistics.getLatencyHistogram(secondSource).getCount(), is(1L));
+		assertThat(statistics.getProviderLatencies().length, is(2));
+		assertThat(Arrays.asList(statistics.getProviderLatencies()), hasItem(startsWith("[priority 10] firstSource:")));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotLoseConcurrentIncrements() throws Exception {
+		// Given
+		final StripedCounter counter = new StripedCounter();
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final int threadCount = 8;
+		final int incrementsPerThread = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; ++i) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int n = 0; n < incrementsPerThread; ++n) {
+						counter.increment();
+						histogram.record(n);
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		// When
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		// Then
+		assertThat(counter.get(), is((long) threadCount * incrementsPerThread));
+		assertThat(histogram.getCount(), is((long) threadCount * incrementsPerThread));
+		assertThat(histogram.getPercentileBound(50.0), is(8192L));
+	}
+
+}
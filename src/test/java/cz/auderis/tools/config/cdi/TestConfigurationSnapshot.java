@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestConfigurationSnapshot {
+
+	interface TestCfgObject {
+		String getName();
+		String getHost();
+	}
+
+	static volatile String currentName = "initial";
+
+	@Produces
+	@ConfigurationSource
+	static ConfigurationDataProvider createProvider() {
+		return new MapDataProvider("name", currentName, "host", currentName + ".example.com");
+	}
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepDataOfSnapshotDuringReload() throws Exception {
+		// Given
+		currentName = "first";
+		extension.reloadProviders();
+		final ConfigurationSnapshot snapshot = extension.openSnapshot();
+		final TestCfgObject snapshotCfg = snapshot.getConfigurationObject(TestCfgObject.class);
+		final String nameBefore = snapshotCfg.getName();
+
+		// When
+		currentName = "second";
+		extension.reloadProviders();
+		final String injectedName = cfg.getName();
+		final String snapshotName = snapshotCfg.getName();
+		final String snapshotHost = snapshotCfg.getHost();
+		snapshot.close();
+
+		// Then
+		assertThat(nameBefore, is("first"));
+		assertThat(injectedName, is("second"));
+		assertThat(snapshotName, is("first"));
+		assertThat(snapshotHost, is("first.example.com"));
+		assertThat(snapshot.isClosed(), is(true));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReadEveryKeyOnlyOnce() throws Exception {
+		// Given
+		final MapDataProvider source = new MapDataProvider("name", "original");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(source);
+		final ConfigurationSnapshot snapshot = new ConfigurationSnapshot(provider.pin(), null);
+		final TestCfgObject snapshotCfg = snapshot.getConfigurationObject(TestCfgObject.class);
+
+		// When
+		final String nameBefore = snapshotCfg.getName();
+		source.data.put("name", "modified");
+		final String nameAfter = snapshotCfg.getName();
+		final Object missing = snapshot.getRawObject("missing");
+		final boolean missingFound = snapshot.containsKey("missing");
+
+		// Then
+		assertThat(nameBefore, is("original"));
+		assertThat(nameAfter, is("original"));
+		assertThat(provider.getRawObject("name"), is((Object) "modified"));
+		assertThat(source.getRawObjectCalls.get(), is(2));
+		assertThat(missing, nullValue());
+		assertThat(missingFound, is(false));
+		// Keys "name" and "missing" were each resolved once by the snapshot
+		assertThat(source.containsKeyCalls.get(), is(2));
+		assertThat(snapshot.getConfigurationObject(TestCfgObject.class), sameInstance(snapshotCfg));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldRejectReadsOfClosedSnapshot() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("name", "original"));
+		final ConfigurationSnapshot snapshot = new ConfigurationSnapshot(provider.pin(), null);
+		final TestCfgObject snapshotCfg = snapshot.getConfigurationObject(TestCfgObject.class);
+
+		// When
+		snapshot.close();
+
+		// Then
+		try {
+			snapshotCfg.getName();
+			fail("closed snapshot was read");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	@SuppressWarnings("unchecked")
+	public void shouldDestroySourcesWhenLastSnapshotIsClosed() throws Exception {
+		// Given
+		final CreationalContext<ConfigurationDataProvider> context = mock(CreationalContext.class);
+		final SourceGeneration generation = new SourceGeneration(Collections.singletonList(context));
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		generation.pin();
+		final ConfigurationSnapshot first = new ConfigurationSnapshot(provider.pin(), generation);
+		generation.pin();
+		final ConfigurationSnapshot second = new ConfigurationSnapshot(provider.pin(), generation);
+
+		// When
+		generation.retire();
+		first.close();
+		first.close();
+		final boolean releasedBeforeLastClose = generation.isReleased();
+		second.close();
+
+		// Then
+		assertThat(releasedBeforeLastClose, is(false));
+		assertThat(generation.isReleased(), is(true));
+		verify(context, times(1)).release();
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	@SuppressWarnings("unchecked")
+	public void shouldDestroyUnpinnedSourcesImmediately() throws Exception {
+		// Given
+		final CreationalContext<ConfigurationDataProvider> context = mock(CreationalContext.class);
+		final SourceGeneration generation = new SourceGeneration(Collections.singletonList(context));
+		generation.pin();
+		generation.unpin();
+		verify(context, never()).release();
+
+		// When
+		generation.retire();
+
+		// Then
+		verify(context, times(1)).release();
+	}
+
+}
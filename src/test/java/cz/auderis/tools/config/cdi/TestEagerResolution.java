@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestEagerResolution {
+
+	interface TestCfgObject {
+		String getName();
+		int getPort();
+		boolean isSecure();
+		String timeout();
+		@RenamedKey
+		String getRenamed();
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface RenamedKey {
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider();
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@BeforeClass
+	public static void enableEagerResolution() {
+		System.setProperty(ConfigurationInjectorSettings.EAGER_RESOLUTION, "fail");
+		provider.data.put("name", "first");
+		provider.data.put("port", "8080");
+		provider.data.put("secure", "true");
+		provider.data.put("timeout", "30");
+	}
+
+	@AfterClass
+	public static void resetEagerResolution() {
+		System.clearProperty(ConfigurationInjectorSettings.EAGER_RESOLUTION);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldResolveKeysDuringBootstrap() throws Exception {
+		// Given
+		final int containsKeyCalls = provider.containsKeyCalls.get();
+
+		// When
+		final String name = cfg.getName();
+		final int port = cfg.getPort();
+
+		// Then
+		assertThat(name, is("first"));
+		assertThat(port, is(8080));
+		assertThat(provider.containsKeyCalls.get(), is(containsKeyCalls));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotKnowKeysOfAnnotatedAccessors() throws Exception {
+		// Given
+		final AccessorLayout layout = AccessorLayout.of(TestCfgObject.class);
+
+		// When
+		final List<String> keys = new ArrayList<String>();
+		for (int slot = 0; slot < layout.getSlotCount(); ++slot) {
+			keys.add(layout.getKey(slot));
+		}
+
+		// Then
+		assertThat(keys, containsInAnyOrder("name", "port", "secure", "timeout", null));
+		assertThat(layout.getKeys(), containsInAnyOrder("name", "port", "secure", "timeout"));
+		assertThat(layout.hasAllKeys(), is(false));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReportMissingKeysFromAllThreads() throws Exception {
+		// Given
+		final MapDataProvider source = new MapDataProvider();
+		final List<String> keys = new ArrayList<String>();
+		for (int i = 0; i < 1000; ++i) {
+			final String key = "key" + i;
+			keys.add(key);
+			if (0 != i % 250) {
+				source.data.put(key, "value" + i);
+			}
+		}
+		final InjectorDataProvider dataProvider = new InjectorDataProvider();
+		dataProvider.addDelegate(source);
+
+		// When
+		final List<String> missingKeys = new EagerKeyResolver(dataProvider, 4).resolve(keys);
+
+		// Then
+		assertThat(missingKeys, contains("key0", "key250", "key500", "key750"));
+		assertThat(dataProvider.containsKey("key1"), is(true));
+	}
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class TestGuardedDataProvider {
+
+	private ExecutorService executor;
+	private AtomicInteger stateChanges;
+	private GuardedDataProvider.StateListener stateListener;
+
+	@Before
+	public void prepareGuard() {
+		executor = Executors.newCachedThreadPool();
+		stateChanges = new AtomicInteger();
+		stateListener = new GuardedDataProvider.StateListener() {
+			@Override
+			public void stateChanged(GuardedDataProvider guard) {
+				stateChanges.incrementAndGet();
+			}
+		};
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFallThroughToLowerPriorityWhenSourceTimesOut() throws Exception {
+		// Given
+		final HangingDataProvider hanging = new HangingDataProvider("a", "hanging");
+		final GuardedDataProvider guarded = new GuardedDataProvider(hanging, 50L, 0, 0L, 16, 100, executor, stateListener);
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(guarded, new MapDataProvider("a", "fallback")));
+
+		// When
+		final long startTime = System.currentTimeMillis();
+		final Object value = provider.getRawObject("a");
+		final long duration = System.currentTimeMillis() - startTime;
+		hanging.release.countDown();
+
+		// Then
+		assertThat(value, is((Object) "fallback"));
+		assertThat(duration, lessThan(2000L));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReturnLastKnownValueWhenSourceFails() throws Exception {
+		// Given
+		final FailingDataProvider source = new FailingDataProvider("a", "a1");
+		final GuardedDataProvider guarded = new GuardedDataProvider(source, 0L, 0, 0L, 16, 100, null, stateListener);
+		guarded.lookup("a");
+		source.failing.set(true);
+
+		// When
+		final Object value = guarded.lookup("a");
+		final Object unknownValue = guarded.lookup("b");
+
+		// Then
+		assertThat(value, is((Object) "a1"));
+		assertThat(unknownValue, is(ConfigurationDataLookup.ABSENT));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldSkipSourceWhileBreakerIsOpen() throws Exception {
+		// Given
+		final FailingDataProvider source = new FailingDataProvider("a", "a1");
+		source.failing.set(true);
+		final GuardedDataProvider guarded = new GuardedDataProvider(source, 0L, 2, 60000L, 16, 100, null, stateListener);
+
+		// When
+		guarded.lookup("a");
+		guarded.lookup("a");
+		final int callsBeforeOpen = source.containsKeyCalls.get();
+		guarded.lookup("a");
+		guarded.lookup("a");
+
+		// Then
+		assertThat(guarded.isOpen(), is(true));
+		assertThat(source.containsKeyCalls.get(), is(callsBeforeOpen));
+		assertThat(stateChanges.get(), is(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepCachedKeysOfOtherSourcesWhenBreakerOpens() throws Exception {
+		// Given
+		final InjectorDataProvider dataProvider = new InjectorDataProvider(16, -1L, true);
+		final FailingDataProvider source = new FailingDataProvider("a", "a1");
+		final MapDataProvider otherSource = new MapDataProvider("b", "b1");
+		final GuardedDataProvider guarded = new GuardedDataProvider(source, 0L, 1, 60000L, 16, 100, null,
+				new GuardedDataProvider.StateListener() {
+					@Override
+					public void stateChanged(GuardedDataProvider guard) {
+						dataProvider.invalidateOwner(guard);
+					}
+				});
+		dataProvider.addDelegate(guarded);
+		dataProvider.addDelegate(otherSource);
+		dataProvider.getRawObject("a");
+		dataProvider.getRawObject("b");
+		final int otherSourceCalls = otherSource.getRawObjectCalls.get();
+
+		// When
+		source.failing.set(true);
+		guarded.lookup("a");
+		final Object valueOfOtherSource = dataProvider.getRawObject("b");
+		final Object valueOfGuardedSource = dataProvider.getRawObject("a");
+
+		// Then
+		assertThat(guarded.isOpen(), is(true));
+		assertThat(valueOfOtherSource, is((Object) "b1"));
+		assertThat(otherSource.getRawObjectCalls.get(), is(otherSourceCalls));
+		assertThat(valueOfGuardedSource, is((Object) "a1"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldCloseBreakerAfterSuccessfulTrial() throws Exception {
+		// Given
+		final FailingDataProvider source = new FailingDataProvider("a", "a1");
+		source.failing.set(true);
+		final GuardedDataProvider guarded = new GuardedDataProvider(source, 0L, 1, 0L, 16, 100, null, stateListener);
+		guarded.lookup("a");
+
+		// When
+		final boolean openAfterFailure = guarded.isOpen();
+		source.failing.set(false);
+		final Object value = guarded.lookup("a");
+
+		// Then
+		assertThat(openAfterFailure, is(true));
+		assertThat(value, is((Object) "a1"));
+		assertThat(guarded.isOpen(), is(false));
+		assertThat(stateChanges.get(), is(2));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotCacheResolutionWhileSourceFails() throws Exception {
+		// Given
+		final FailingDataProvider source = new FailingDataProvider("a", "primary");
+		source.failing.set(true);
+		final GuardedDataProvider guarded = new GuardedDataProvider(source, 0L, 0, 0L, 16, 100, null, stateListener);
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(guarded, new MapDataProvider("a", "fallback")));
+
+		// When
+		final Object degradedValue = provider.getRawObject("a");
+		final boolean degradedMissing = provider.containsKey("b");
+		source.failing.set(false);
+		final Object recoveredValue = provider.getRawObject("a");
+
+		// Then
+		assertThat(degradedValue, is((Object) "fallback"));
+		assertThat(degradedMissing, is(false));
+		assertThat(recoveredValue, is((Object) "primary"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFailFastWhenTooManyQueriesArePending() throws Exception {
+		// Given
+		final HangingDataProvider hanging = new HangingDataProvider("a", "hanging");
+		final GuardedDataProvider guarded = new GuardedDataProvider(hanging, 500L, 0, 0L, 1, 100, executor, stateListener);
+		guarded.lookup("a");
+
+		// When
+		final long startTime = System.nanoTime();
+		final Object value = guarded.lookup("a");
+		final long duration = System.nanoTime() - startTime;
+		hanging.release.countDown();
+
+		// Then
+		assertThat(value, is(ConfigurationDataLookup.ABSENT));
+		assertThat(duration, lessThan(250000000L));
+		assertThat(guarded.isOpen(), is(false));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldForwardCapabilitiesOfSource() throws Exception {
+		// Given
+		final MapDataProvider.Batch batchSource = new MapDataProvider.Batch("a", "a1", "b", "b1");
+		final MapDataProvider.Primitive primitiveSource = new MapDataProvider.Primitive("port", "8080");
+
+		// When
+		final GuardedDataProvider batchGuard = GuardedDataProvider.create(batchSource, 0L, 0, 0L, 16, 100, null, stateListener);
+		final GuardedDataProvider primitiveGuard = GuardedDataProvider.create(primitiveSource, 0L, 0, 0L, 16, 100, null, stateListener);
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(batchGuard, new MapDataProvider("c", "c2")));
+		final List<String> missingKeys = provider.prefetch(Arrays.asList("a", "b", "x"));
+
+		// Then
+		assertThat(batchGuard, is(instanceOf(BatchDataProvider.class)));
+		assertThat(batchGuard, is(not(instanceOf(PrimitiveDataProvider.class))));
+		assertThat(primitiveGuard, is(instanceOf(PrimitiveDataProvider.class)));
+		assertThat(primitiveGuard.lookupPrimitive("port", int.class), is((Object) 8080));
+		assertThat(batchSource.batches, hasSize(1));
+		assertThat(missingKeys, contains("x"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldLeaveKeysUnresolvedWhenBatchQueryFails() throws Exception {
+		// Given
+		final MapDataProvider.Batch batchSource = new MapDataProvider.Batch("a", "a1") {
+			@Override
+			public Map<String, Object> getRawObjects(Collection<String> keys) {
+				throw new IllegalStateException("Source not available");
+			}
+		};
+		final GuardedDataProvider guarded = GuardedDataProvider.create(batchSource, 0L, 0, 0L, 16, 100, null, stateListener);
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(guarded, new MapDataProvider("b", "b2")));
+
+		// When
+		final List<String> missingKeys = provider.prefetch(Arrays.asList("a", "b"));
+
+		// Then
+		assertThat(missingKeys, is(empty()));
+		assertThat(provider.getRawObject("a"), is((Object) "a1"));
+		assertThat(provider.getRawObject("b"), is((Object) "b2"));
+	}
+
+	/**
+	 * Provider that does not answer until it is released, even when interrupted
+	 * (like a source blocked in I/O)
+	 */
+	static class HangingDataProvider extends MapDataProvider {
+		final CountDownLatch release = new CountDownLatch(1);
+
+		HangingDataProvider(Object... keysAndValues) {
+			super(keysAndValues);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			boolean interrupted = false;
+			while (release.getCount() > 0L) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return super.containsKey(key);
+		}
+	}
+
+	/**
+	 * Provider that throws exceptions on demand
+	 */
+	static class FailingDataProvider extends MapDataProvider {
+		final AtomicBoolean failing = new AtomicBoolean();
+
+		FailingDataProvider(Object... keysAndValues) {
+			super(keysAndValues);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			final boolean result = super.containsKey(key);
+			if (failing.get()) {
+				throw new IllegalStateException("Source not available");
+			}
+			return result;
+		}
+	}
+
+}
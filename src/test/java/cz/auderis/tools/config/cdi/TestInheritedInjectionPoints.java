@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses({ ConfigurationInjectorExtension.class, TestInheritedInjectionPoints.IndexedConsumer.class,
+		TestInheritedInjectionPoints.GenericConsumer.class })
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestInheritedInjectionPoints {
+
+	interface OwnCfgObject {
+		String getName();
+	}
+
+	interface BaseCfgObject {
+		int getPort();
+	}
+
+	interface GenericCfgObject<T> {
+		int getPort();
+	}
+
+	static abstract class IndexedBase {
+		@Inject
+		@ConfigurationObject
+		BaseCfgObject baseCfg;
+	}
+
+	static class IndexedConsumer extends IndexedBase {
+		@Inject
+		@ConfigurationObject
+		OwnCfgObject ownCfg;
+	}
+
+	// Generic injection points are not indexed, so the superclass is left out of the index
+	static abstract class GenericBase {
+		@Inject
+		@ConfigurationObject
+		GenericCfgObject<String> genericCfg;
+	}
+
+	static class GenericConsumer extends GenericBase {
+		@Inject
+		@ConfigurationObject
+		OwnCfgObject ownCfg;
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider("name", "consumer", "port", "8080");
+
+	@Inject
+	IndexedConsumer indexedConsumer;
+
+	@Inject
+	GenericConsumer genericConsumer;
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInjectConfigurationObjectsDeclaredBySuperclass() throws Exception {
+		assertThat(indexedConsumer.ownCfg.getName(), is("consumer"));
+		assertThat(indexedConsumer.baseCfg.getPort(), is(8080));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldScanClassWithUnindexedSuperclass() throws Exception {
+		assertThat(genericConsumer.ownCfg.getName(), is("consumer"));
+		assertThat(genericConsumer.genericCfg.getPort(), is(8080));
+	}
+
+}
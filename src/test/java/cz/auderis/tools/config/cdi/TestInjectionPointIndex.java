@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import javax.inject.Inject;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+
+public class TestInjectionPointIndex {
+
+	interface TestCfgObject {
+		String getName();
+	}
+
+	static class IndexedConsumer {
+		@Inject
+		@ConfigurationObject
+		TestCfgObject cfg;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldRestoreInjectionKeysFromIndex() throws Exception {
+		// Given
+		final InjectionPointIndex index = new InjectionPointIndex();
+		final String[] qualifiers = { ConfigurationObject.class.getName() };
+		index.addInjection(IndexedConsumer.class.getName(), TestCfgObject.class.getName(), qualifiers);
+		final StringWriter indexText = new StringWriter();
+		index.writeTo(indexText);
+
+		// When
+		final InjectionPointIndex restoredIndex = new InjectionPointIndex();
+		restoredIndex.readFrom(new StringReader(indexText.toString()));
+		final List<ConfigurationObjectKey> injections = restoredIndex.getInjections(IndexedConsumer.class);
+
+		// Then
+		final Annotation declaredQualifier = IndexedConsumer.class.getDeclaredField("cfg").getAnnotation(ConfigurationObject.class);
+		final Set<Annotation> declaredQualifiers = Collections.singleton(declaredQualifier);
+		final ConfigurationObjectKey scannedKey = new ConfigurationObjectKey(TestCfgObject.class, declaredQualifiers);
+		assertThat(injections, contains(scannedKey));
+		assertThat(injections.get(0).getQualifiers(), equalTo(declaredQualifiers));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldIndexInjectionPointsDuringCompilation() throws Exception {
+		// Given
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeThat(compiler, notNullValue());
+		final File sourceDir = folder.newFolder("src");
+		final File outputDir = folder.newFolder("classes");
+		final File indexedSource = writeSource(sourceDir, "Indexed.java",
+				"package sample;",
+				"import cz.auderis.tools.config.annotation.ConfigurationObject;",
+				"import javax.inject.Inject;",
+				"import javax.inject.Provider;",
+				"public class Indexed {",
+				"  public interface Cfg { String getName(); boolean isEnabled(); int getURL(); void reset(); }",
+				"  @Inject @ConfigurationObject Cfg cfg;",
+				"  @Inject @ConfigurationObject Provider<Cfg> lazyCfg;",
+				"  @Inject void init(@ConfigurationObject Cfg cfg) { }",
+				"}");
+		final File genericSource = writeSource(sourceDir, "Generic.java",
+				"package sample;",
+				"import cz.auderis.tools.config.annotation.ConfigurationObject;",
+				"import javax.inject.Inject;",
+				"public class Generic {",
+				"  public interface GenericCfg<T> { String getName(); }",
+				"  @Inject @ConfigurationObject Indexed.Cfg cfg;",
+				"  @Inject @ConfigurationObject GenericCfg<String> genericCfg;",
+				"}");
+
+		// When
+		final int result = compileWithProcessor(compiler, outputDir, indexedSource, genericSource);
+
+		// Then
+		assertThat(result, is(0));
+		final InjectionPointIndex index = readIndex(outputDir);
+		assertThat(index.getClassNames(), contains("sample.Indexed"));
+		assertThat(index.getInjectionCount(), is(1));
+		assertThat(index.getInjectedTypes(), hasSize(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldRemoveEntriesOfRecompiledClassWithoutInjectionPoints() throws Exception {
+		// Given
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeThat(compiler, notNullValue());
+		final File sourceDir = folder.newFolder("src");
+		final File outputDir = folder.newFolder("classes");
+		final File indexedSource = writeSource(sourceDir, "Indexed.java",
+				"package sample;",
+				"import cz.auderis.tools.config.annotation.ConfigurationObject;",
+				"import javax.inject.Inject;",
+				"public class Indexed {",
+				"  public interface Cfg { String getName(); }",
+				"  @Inject @ConfigurationObject Cfg cfg;",
+				"}");
+		assertThat(compileWithProcessor(compiler, outputDir, indexedSource), is(0));
+		assertThat(readIndex(outputDir).getClassNames(), contains("sample.Indexed"));
+
+		// When
+		final File changedSource = writeSource(sourceDir, "Indexed.java",
+				"package sample;",
+				"public class Indexed {",
+				"  public interface Cfg { String getName(); }",
+				"  Cfg cfg;",
+				"}");
+		final int result = compileWithProcessor(compiler, outputDir, changedSource);
+
+		// Then
+		assertThat(result, is(0));
+		assertThat(readIndex(outputDir).isEmpty(), is(true));
+	}
+
+	private static int compileWithProcessor(JavaCompiler compiler, File outputDir, File... sources) {
+		final List<String> arguments = new ArrayList<String>();
+		Collections.addAll(arguments, "-proc:only", "-processor", InjectionPointIndexProcessor.class.getName(),
+				"-classpath", System.getProperty("java.class.path"), "-d", outputDir.getPath());
+		for (final File source : sources) {
+			arguments.add(source.getPath());
+		}
+		return compiler.run(null, null, null, arguments.toArray(new String[arguments.size()]));
+	}
+
+	private static InjectionPointIndex readIndex(File outputDir) throws Exception {
+		final File indexFile = new File(outputDir, InjectionPointIndex.RESOURCE);
+		final InjectionPointIndex index = new InjectionPointIndex();
+		final InputStreamReader indexReader = new InputStreamReader(new FileInputStream(indexFile), "UTF-8");
+		try {
+			index.readFrom(indexReader);
+		} finally {
+			indexReader.close();
+		}
+		return index;
+	}
+
+	private static File writeSource(File dir, String name, String... lines) throws Exception {
+		final File source = new File(dir, name);
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(source), "UTF-8");
+		try {
+			for (final String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		return source;
+	}
+
+}
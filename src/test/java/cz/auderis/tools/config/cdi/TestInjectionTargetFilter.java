@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TestInjectionTargetFilter {
+
+	static class BaseTarget {
+	}
+
+	static class DerivedTarget extends BaseTarget {
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldAcceptSubclassesOfCandidates() throws Exception {
+		// Given
+		final InjectionTargetFilter filter = new InjectionTargetFilter(new String[0], new String[0]);
+
+		// When
+		filter.addCandidate(BaseTarget.class);
+
+		// Then
+		assertThat(filter.isCandidate(DerivedTarget.class), is(true));
+		assertThat(filter.isCandidate(TestInjectionTargetFilter.class), is(false));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFilterPackages() throws Exception {
+		// Given
+		final String[] included = { "cz.auderis", "org.example." };
+		final String[] excluded = { "cz.auderis.tools.config.cdi.internal" };
+
+		// When
+		final InjectionTargetFilter filter = new InjectionTargetFilter(included, excluded);
+
+		// Then
+		assertThat(filter.isPackageAccepted("cz.auderis.tools.config.cdi.Target"), is(true));
+		assertThat(filter.isPackageAccepted("org.example.Target"), is(true));
+		assertThat(filter.isPackageAccepted("cz.auderisx.Target"), is(false));
+		assertThat(filter.isPackageAccepted("cz.auderis.tools.config.cdi.internal.Target"), is(false));
+		assertThat(filter.addCandidate(String.class), is(false));
+	}
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestInjectorDataProvider {
+
+	private static final int THREAD_COUNT = 200;
+	private static final int KEY_COUNT = 500;
+	private static final int ITERATIONS = 50;
+
+	interface BatchCfgObject {
+		String getName();
+		int getPort();
+		String getAlias();
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldResolveKeysInPriorityOrder() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("a", "a1", "b", "b1"));
+		provider.addDelegate(new MapDataProvider("a", "a2", "c", "c2"));
+
+		// When
+		final Object a = provider.getRawObject("a");
+		final Object c = provider.getRawObject("c");
+		final Object missing = provider.getRawObject("x");
+
+		// Then
+		assertThat(a, is((Object) "a1"));
+		assertThat(c, is((Object) "c2"));
+		assertThat(missing, nullValue());
+		assertThat(provider.containsKey("b"), is(true));
+		assertThat(provider.containsKey("x"), is(false));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldUseSinglePassLookupWhenAvailable() throws Exception {
+		// Given
+		final MapDataProvider.WithLookup first = new MapDataProvider.WithLookup("a", "a1");
+		final MapDataProvider.WithLookup second = new MapDataProvider.WithLookup("b", "b2");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(first);
+		provider.addDelegate(second);
+
+		// When
+		final Object b = provider.getRawObject("b");
+		final Object bAgain = provider.getRawObject("b");
+
+		// Then
+		assertThat(b, is((Object) "b2"));
+		assertThat(bAgain, is((Object) "b2"));
+		assertThat(first.lookupCalls.get(), is(1));
+		assertThat(second.lookupCalls.get(), is(2));
+		assertThat(first.containsKeyCalls.get() + second.containsKeyCalls.get(), is(0));
+		assertThat(first.getRawObjectCalls.get() + second.getRawObjectCalls.get(), is(0));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFindOwnersOfIndexedKeysWithoutScanning() throws Exception {
+		// Given
+		final MapDataProvider.Enumerable first = new MapDataProvider.Enumerable("a", "a1", "b", "b1");
+		final MapDataProvider.Enumerable second = new MapDataProvider.Enumerable("a", "a2", "c", "c2");
+		final MapDataProvider third = new MapDataProvider("d", "d3");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(first, second, third));
+
+		// When
+		final Object a = provider.getRawObject("a");
+		final Object c = provider.getRawObject("c");
+		final Object d = provider.getRawObject("d");
+		final boolean containsMissing = provider.containsKey("x");
+
+		// Then
+		assertThat(a, is((Object) "a1"));
+		assertThat(c, is((Object) "c2"));
+		assertThat(d, is((Object) "d3"));
+		assertThat(containsMissing, is(false));
+		assertThat(first.containsKeyCalls.get() + second.containsKeyCalls.get(), is(0));
+		assertThat(third.containsKeyCalls.get(), is(2));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotIndexProvidersOverriddenByNonEnumerableProvider() throws Exception {
+		// Given
+		final MapDataProvider first = new MapDataProvider("a", "a1");
+		final MapDataProvider.Enumerable second = new MapDataProvider.Enumerable("a", "a2", "b", "b2");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(first, second));
+
+		// When
+		final Object a = provider.getRawObject("a");
+		final Object b = provider.getRawObject("b");
+
+		// Then
+		assertThat(a, is((Object) "a1"));
+		assertThat(b, is((Object) "b2"));
+		assertThat(second.containsKeyCalls.get(), is(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotIndexKeysOverLimit() throws Exception {
+		// Given
+		final MapDataProvider.Enumerable first = new MapDataProvider.Enumerable("a", "a1", "b", "b1");
+		final MapDataProvider.Enumerable second = new MapDataProvider.Enumerable("c", "c2", "d", "d2");
+		final InjectorDataProvider provider = new InjectorDataProvider(100, -1L, false, 3, null);
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(first, second));
+
+		// When
+		final Object b = provider.getRawObject("b");
+		final Object d = provider.getRawObject("d");
+
+		// Then
+		assertThat(b, is((Object) "b1"));
+		assertThat(d, is((Object) "d2"));
+		assertThat(first.containsKeyCalls.get(), is(0));
+		assertThat(second.containsKeyCalls.get(), is(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldMemoizeValuesUntilInvalidated() throws Exception {
+		// Given
+		final MapDataProvider delegate = new MapDataProvider("a", "a1", "b", "b1");
+		final InjectorDataProvider provider = new InjectorDataProvider(100, -1L, true);
+		provider.addDelegate(delegate);
+
+		// When
+		provider.getRawObject("a");
+		provider.getRawObject("b");
+		delegate.data.put("a", "a2");
+		delegate.data.put("b", "b2");
+		final Object cachedA = provider.getRawObject("a");
+		final int callsWhileCached = delegate.getRawObjectCalls.get();
+		provider.invalidate(Collections.singleton("a"));
+		final Object invalidatedA = provider.getRawObject("a");
+		final Object cachedB = provider.getRawObject("b");
+
+		// Then
+		assertThat(cachedA, is((Object) "a1"));
+		assertThat(callsWhileCached, is(2));
+		assertThat(invalidatedA, is((Object) "a2"));
+		assertThat(cachedB, is((Object) "b1"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepResolutionCacheBounded() throws Exception {
+		// Given
+		final ResolutionCache cache = new ResolutionCache(100, -1L);
+		final MapDataProvider owner = new MapDataProvider();
+		cache.put("hot", owner);
+
+		// When
+		for (int i = 0; i < 10000; ++i) {
+			cache.putMissing(key(i));
+			if (0 == i % 10) {
+				cache.get("hot");
+			}
+		}
+
+		// Then
+		assertTrue("Cache size " + cache.size() + " exceeds limit", cache.size() <= 100);
+		assertThat(cache.get("hot"), is((Object) owner));
+	}
+
+	@Test(timeout = 60000L)
+	@Category(UnitTest.class)
+	public void shouldKeepResolutionCacheBoundedUnderConcurrentInsertion() throws Exception {
+		// Given
+		final ResolutionCache cache = new ResolutionCache(100, -1L);
+		final MapDataProvider owner = new MapDataProvider();
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+		// When
+		try {
+			for (int t = 0; t < THREAD_COUNT; ++t) {
+				final int threadOffset = t;
+				executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						startGate.await();
+						for (int i = 0; i < 1000; ++i) {
+							cache.put(key(threadOffset * 1000 + i), owner);
+						}
+						return null;
+					}
+				});
+			}
+			startGate.countDown();
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue("Insertion did not finish in time", executor.awaitTermination(50L, TimeUnit.SECONDS));
+
+		// Then
+		assertTrue("Cache size " + cache.size() + " exceeds limit", cache.size() <= 100 + THREAD_COUNT);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldExpireNegativeEntries() throws Exception {
+		// Given
+		final MapDataProvider delegate = new MapDataProvider();
+		final InjectorDataProvider provider = new InjectorDataProvider(100, 50L, false);
+		provider.addDelegate(delegate);
+
+		// When
+		provider.containsKey("late");
+		provider.containsKey("late");
+		final int callsBeforeExpiration = delegate.containsKeyCalls.get();
+		delegate.data.put("late", "value");
+		Thread.sleep(100L);
+		final Object lateValue = provider.getRawObject("late");
+
+		// Then
+		assertThat(callsBeforeExpiration, is(1));
+		assertThat(lateValue, is((Object) "value"));
+	}
+
+	@Test(timeout = 60000L)
+	@Category(UnitTest.class)
+	public void shouldStayConsistentUnderConcurrentAccess() throws Exception {
+		// Given
+		final MapDataProvider evenProvider = new MapDataProvider();
+		final MapDataProvider oddProvider = new MapDataProvider();
+		for (int i = 0; i < KEY_COUNT; ++i) {
+			final MapDataProvider target = (0 == i % 2) ? evenProvider : oddProvider;
+			target.data.put(key(i), value(i));
+		}
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(evenProvider);
+		provider.addDelegate(oddProvider);
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>(THREAD_COUNT);
+
+		// When
+		try {
+			for (int t = 0; t < THREAD_COUNT; ++t) {
+				final int threadOffset = t;
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						startGate.await();
+						int errors = 0;
+						for (int n = 0; n < ITERATIONS; ++n) {
+							// Probe existing keys as well as misses, in a thread-specific order
+							for (int i = 0; i < KEY_COUNT + 10; ++i) {
+								final int keyIndex = (i + threadOffset * 7) % (KEY_COUNT + 10);
+								final String key = key(keyIndex);
+								final boolean expectedPresence = keyIndex < KEY_COUNT;
+								if (expectedPresence != provider.containsKey(key)) {
+									++errors;
+								}
+								final Object obtained = provider.getRawObject(key);
+								final Object expected = expectedPresence ? value(keyIndex) : null;
+								if ((null == expected) ? (null != obtained) : !expected.equals(obtained)) {
+									++errors;
+								}
+							}
+						}
+						return errors;
+					}
+				}));
+			}
+			startGate.countDown();
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue("Stress test did not finish in time", executor.awaitTermination(50L, TimeUnit.SECONDS));
+
+		// Then
+		int totalErrors = 0;
+		for (final Future<Integer> result : results) {
+			totalErrors += result.get();
+		}
+		assertThat(totalErrors, is(0));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotLoseConcurrentlyAddedDelegates() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider(key(0), value(0)));
+		final int writerCount = 8;
+		final int delegatesPerWriter = 50;
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(writerCount + 1);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+		// When
+		try {
+			for (int w = 0; w < writerCount; ++w) {
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						startGate.await();
+						for (int i = 0; i < delegatesPerWriter; ++i) {
+							provider.addDelegate(new MapDataProvider());
+						}
+						return 0;
+					}
+				}));
+			}
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					startGate.await();
+					int errors = 0;
+					for (int i = 0; i < 10000; ++i) {
+						if (!value(0).equals(provider.getRawObject(key(0)))) {
+							++errors;
+						}
+					}
+					return errors;
+				}
+			}));
+			startGate.countDown();
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue("Test did not finish in time", executor.awaitTermination(50L, TimeUnit.SECONDS));
+
+		// Then
+		int totalErrors = 0;
+		for (final Future<Integer> result : results) {
+			totalErrors += result.get();
+		}
+		assertThat(totalErrors, is(0));
+		assertThat(provider.getDelegates().size(), is(1 + writerCount * delegatesPerWriter));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldPrefetchKeysInBatches() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider(16, -1L, true);
+		final MapDataProvider plainSource = new MapDataProvider("a", "a1");
+		final MapDataProvider.Batch batchSource = new MapDataProvider.Batch("a", "a2", "b", "b2", "c", "c2");
+		provider.addDelegate(plainSource);
+		provider.addDelegate(batchSource);
+
+		// When
+		final List<String> missingKeys = provider.prefetch(Arrays.asList("a", "b", "c", "x"));
+		final Object a = provider.getRawObject("a");
+		final Object b = provider.getRawObject("b");
+		final Object c = provider.getRawObject("c");
+
+		// Then
+		assertThat(missingKeys, contains("x"));
+		assertThat(batchSource.batches, hasSize(1));
+		assertThat(batchSource.batches.get(0), contains("b", "c", "x"));
+		assertThat(a, is((Object) "a1"));
+		assertThat(b, is((Object) "b2"));
+		assertThat(c, is((Object) "c2"));
+		assertThat(batchSource.containsKeyCalls.get(), is(0));
+		assertThat(batchSource.getRawObjectCalls.get(), is(0));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldPrefetchKeysOfAccessorOnce() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider(16, -1L, false);
+		final MapDataProvider.Batch batchSource = new MapDataProvider.Batch("name", "xyz", "port", 8080);
+		provider.addDelegate(batchSource);
+		final ConfigurationInjector injector = new ConfigurationInjector(BatchCfgObject.class, null, provider);
+
+		// When
+		injector.create(null);
+		injector.create(null);
+
+		// Then
+		assertThat(batchSource.batches, hasSize(1));
+		assertThat(batchSource.batches.get(0), containsInAnyOrder("name", "port", "alias"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReadBatchSourceAgainWithoutValueCache() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider(16, -1L, false);
+		final MapDataProvider.Batch batchSource = new MapDataProvider.Batch("a", "a1", "b", "b1");
+		provider.addDelegate(new MapDataProvider("c", "c0"));
+		provider.addDelegate(batchSource);
+		provider.prefetch(Arrays.asList("a", "b"));
+
+		// When
+		batchSource.data.put("a", "a2");
+		final Object firstRead = provider.getRawObject("a");
+		final int callsAfterFirstRead = batchSource.getRawObjectCalls.get();
+
+		// Then
+		assertThat(firstRead, is((Object) "a2"));
+		assertThat(callsAfterFirstRead, is(1));
+	}
+
+	private static String key(int index) {
+		return "key." + index;
+	}
+
+	private static String value(int index) {
+		return "value#" + index;
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestLazyInjection {
+
+	interface LazyCfgObject {
+		String getName();
+	}
+
+	interface GenericCfgObject<T> {
+		String getName();
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider("name", "lazy");
+
+	@Inject
+	@ConfigurationObject
+	Instance<LazyCfgObject> lazyInstance;
+
+	@Inject
+	@ConfigurationObject
+	Provider<LazyCfgObject> lazyProvider;
+
+	@Inject
+	@ConfigurationObject
+	GenericCfgObject<Integer> genericCfg;
+
+	@Inject
+	@ConfigurationObject
+	Instance<GenericCfgObject<String>> lazyGenericInstance;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableMetrics() {
+		System.setProperty(ConfigurationInjectorSettings.METRICS, "true");
+	}
+
+	@AfterClass
+	public static void resetMetrics() {
+		System.clearProperty(ConfigurationInjectorSettings.METRICS);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldInjectParameterizedConfigurationType() throws Exception {
+		assertThat(genericCfg.getName(), is("lazy"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldCreateLazyAccessorOnFirstAccess() throws Exception {
+		// Given
+		final ConfigurationStatisticsMBean statistics = extension.getStatistics();
+		final long directlyCreated = statistics.getAccessorCreationCount();
+
+		// When
+		final LazyCfgObject fromInstance = lazyInstance.get();
+		final LazyCfgObject fromProvider = lazyProvider.get();
+		final GenericCfgObject<String> genericFromInstance = lazyGenericInstance.get();
+
+		// Then
+		assertThat(directlyCreated, is(1L));
+		assertThat(statistics.getAccessorCreationCount(), is(4L));
+		assertThat(fromInstance.getName(), is("lazy"));
+		assertThat(fromProvider.getName(), is("lazy"));
+		assertThat(genericFromInstance.getName(), is("lazy"));
+	}
+
+}
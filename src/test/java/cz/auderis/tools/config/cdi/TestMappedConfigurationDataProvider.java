@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestMappedConfigurationDataProvider {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFindAllCompiledEntries() throws Exception {
+		// Given
+		final Map<String, String> entries = new HashMap<String, String>();
+		for (int i = 0; i < 1000; ++i) {
+			entries.put("key." + i, "value " + i);
+		}
+		entries.put("empty", "");
+		entries.put("unicode.žluťoučký", "kůň 🐎");
+		final File snapshot = folder.newFile("config.bin");
+
+		// When
+		MappedConfigurationCompiler.compile(entries, snapshot);
+		final MappedConfigurationDataProvider provider = new MappedConfigurationDataProvider(snapshot);
+
+		// Then
+		assertThat(provider.size(), is(entries.size()));
+		for (final Map.Entry<String, String> entry : entries.entrySet()) {
+			assertThat(provider.containsKey(entry.getKey()), is(true));
+			assertThat(provider.getRawObject(entry.getKey()), is((Object) entry.getValue()));
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotFindMissingKeys() throws Exception {
+		// Given
+		final Map<String, String> entries = new HashMap<String, String>();
+		entries.put("b", "1");
+		entries.put("d", "2");
+		final File snapshot = folder.newFile("config.bin");
+		MappedConfigurationCompiler.compile(entries, snapshot);
+		final MappedConfigurationDataProvider provider = new MappedConfigurationDataProvider(snapshot);
+
+		// When
+		final boolean containsA = provider.containsKey("a");
+		final boolean containsC = provider.containsKey("c");
+		final Object lookupE = provider.lookup("e");
+		final Object rawE = provider.getRawObject("e");
+
+		// Then
+		assertThat(containsA, is(false));
+		assertThat(containsC, is(false));
+		assertThat(lookupE, sameInstance(ConfigurationDataLookup.ABSENT));
+		assertThat(rawE, nullValue());
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepMappedSnapshotReadableWhenRecompiled() throws Exception {
+		// Given
+		final Map<String, String> entries = new HashMap<String, String>();
+		entries.put("first", "original");
+		entries.put("second", "original");
+		final File snapshot = folder.newFile("config.bin");
+		MappedConfigurationCompiler.compile(entries, snapshot);
+		final MappedConfigurationDataProvider provider = new MappedConfigurationDataProvider(snapshot);
+
+		// When
+		final Map<String, String> changedEntries = new HashMap<String, String>();
+		changedEntries.put("first", "changed");
+		MappedConfigurationCompiler.compile(changedEntries, snapshot);
+		final MappedConfigurationDataProvider changedProvider = new MappedConfigurationDataProvider(snapshot);
+
+		// Then
+		assertThat(provider.size(), is(2));
+		assertThat(provider.getRawObject("second"), is((Object) "original"));
+		assertThat(changedProvider.size(), is(1));
+		assertThat(changedProvider.getRawObject("first"), is((Object) "changed"));
+		assertThat(folder.getRoot().list().length, is(1));
+	}
+
+	@Test(expected = IOException.class)
+	@Category(UnitTest.class)
+	public void shouldRejectInvalidFile() throws Exception {
+		final File invalidFile = folder.newFile("invalid.bin");
+		final OutputStream output = new FileOutputStream(invalidFile);
+		try {
+			output.write("key=value\n".getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+		new MappedConfigurationDataProvider(invalidFile);
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationData;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestMemoizingAccessors {
+
+	interface TestCfgObject {
+		String getName();
+		int getPort();
+	}
+
+	interface PrimitiveCfgObject {
+		int getPort();
+		long getTimeout();
+		double getRatio();
+		boolean isEnabled();
+	}
+
+	interface NamingCfgObject {
+		String getName();
+		boolean isEnabled();
+		String getURL();
+		String timeout();
+	}
+
+	@Produces
+	@ConfigurationSource
+	static MapDataProvider provider = new MapDataProvider();
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject otherCfg;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableMemoizingAccessors() {
+		System.setProperty(ConfigurationInjectorSettings.MEMOIZING_ACCESSORS, "true");
+	}
+
+	@AfterClass
+	public static void resetMemoizingAccessors() {
+		System.clearProperty(ConfigurationInjectorSettings.MEMOIZING_ACCESSORS);
+	}
+
+	@Before
+	public void resetProvider() {
+		provider.data.clear();
+		provider.data.put("name", "first");
+		provider.data.put("port", "8080");
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldUseMemoizingAccessor() throws Exception {
+		assertThat(Proxy.getInvocationHandler(cfg), instanceOf(MemoizingAccessorHandler.class));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldResolveValueOnlyOnce() throws Exception {
+		// Given
+		final String name = cfg.getName();
+		final int port = cfg.getPort();
+		final int delegateCalls = provider.containsKeyCalls.get() + provider.getRawObjectCalls.get();
+
+		// When
+		final String nameAgain = cfg.getName();
+		final int portAgain = cfg.getPort();
+
+		// Then
+		assertThat(name, is("first"));
+		assertThat(port, is(8080));
+		assertThat(nameAgain, is("first"));
+		assertThat(portAgain, is(8080));
+		assertThat(provider.containsKeyCalls.get() + provider.getRawObjectCalls.get(), is(delegateCalls));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldResolveAgainAfterInvalidation() throws Exception {
+		// Given
+		cfg.getPort();
+		provider.data.put("port", "9090");
+
+		// When
+		final int cachedPort = cfg.getPort();
+		extension.invalidate("port");
+		final int changedPort = cfg.getPort();
+
+		// Then
+		assertThat(cachedPort, is(8080));
+		assertThat(changedPort, is(9090));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReadPrimitivesWithoutGenericConversion() throws Exception {
+		// Given
+		final InjectorDataProvider dataProvider = new InjectorDataProvider();
+		final MapDataProvider.Primitive primitiveProvider = new MapDataProvider.Primitive(
+				"port", "8080", "timeout", "120000", "ratio", "0.5", "enabled", "true");
+		dataProvider.addDelegate(primitiveProvider);
+		final AccessorLayout layout = AccessorLayout.of(PrimitiveCfgObject.class);
+		final PrimitiveCfgObject primitiveCfg = (PrimitiveCfgObject) layout.createAccessor(dataProvider);
+
+		// When
+		final int port = primitiveCfg.getPort();
+		final long timeout = primitiveCfg.getTimeout();
+		final double ratio = primitiveCfg.getRatio();
+		final boolean enabled = primitiveCfg.isEnabled();
+		final int portAgain = primitiveCfg.getPort();
+
+		// Then
+		assertThat(port, is(8080));
+		assertThat(timeout, is(120000L));
+		assertThat(ratio, is(0.5));
+		assertThat(enabled, is(true));
+		assertThat(portAgain, is(8080));
+		assertThat(primitiveProvider.primitiveCalls.get(), is(4));
+		assertThat(primitiveProvider.getRawObjectCalls.get(), is(0));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldFallBackToGenericConversionOfPrimitives() throws Exception {
+		// Given
+		final InjectorDataProvider dataProvider = new InjectorDataProvider();
+		final MapDataProvider.Primitive primitiveProvider = new MapDataProvider.Primitive("port", 8080);
+		dataProvider.addDelegate(primitiveProvider);
+		final AccessorLayout layout = AccessorLayout.of(PrimitiveCfgObject.class);
+		final PrimitiveCfgObject primitiveCfg = (PrimitiveCfgObject) layout.createAccessor(dataProvider);
+
+		// When
+		final int port = primitiveCfg.getPort();
+
+		// Then
+		assertThat(port, is(8080));
+		assertThat(primitiveProvider.primitiveCalls.get(), is(1));
+		assertThat(primitiveProvider.getRawObjectCalls.get(), is(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldUseKeysReadByConfigurationProxy() throws Exception {
+		// When
+		final AccessorLayout layout = AccessorLayout.of(NamingCfgObject.class);
+
+		// Then
+		assertThat(layout.hasAllKeys(), is(true));
+		for (int slot = 0; slot < layout.getSlotCount(); ++slot) {
+			final Method method = layout.getMethod(slot);
+			final boolean flag = (boolean.class == method.getReturnType());
+			final Object expectedValue = flag ? (Object) Boolean.TRUE : "value of " + method.getName();
+			final MapDataProvider keyProvider = new MapDataProvider(layout.getKey(slot), flag ? "true" : expectedValue);
+			final Object cfgObject = ConfigurationData.createConfigurationObject(keyProvider, NamingCfgObject.class);
+			assertThat(method.getName(), method.invoke(cfgObject), is(expectedValue));
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepObjectIdentitySemantics() throws Exception {
+		assertThat(cfg.equals(cfg), is(true));
+		assertThat(cfg.equals(otherCfg), is(false));
+		assertThat(cfg.hashCode(), is(System.identityHashCode(cfg)));
+	}
+
+}
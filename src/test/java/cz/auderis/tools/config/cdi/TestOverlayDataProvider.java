@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestOverlayDataProvider {
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldOverrideKeysWithoutModifyingBase() throws Exception {
+		// Given
+		final Map<String, Object> defaults = new HashMap<String, Object>();
+		defaults.put("host", "localhost");
+		defaults.put("port", "80");
+		final OverlayDataProvider base = OverlayDataProvider.of(defaults);
+
+		// When
+		final OverlayDataProvider variant = base.with("port", "8080").with("alias", "node1").without("host");
+
+		// Then
+		assertThat(base.size(), is(2));
+		assertThat(base.getRawObject("port"), is((Object) "80"));
+		assertThat(base.containsKey("alias"), is(false));
+		assertThat(base.containsKey("host"), is(true));
+		assertThat(variant.size(), is(2));
+		assertThat(variant.getRawObject("port"), is((Object) "8080"));
+		assertThat(variant.getRawObject("alias"), is((Object) "node1"));
+		assertThat(variant.containsKey("host"), is(false));
+		assertThat(variant.lookup("host"), sameInstance(ConfigurationDataLookup.ABSENT));
+		assertThat(variant.getKeys(), containsInAnyOrder("port", "alias"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepNullValues() throws Exception {
+		// Given
+		final OverlayDataProvider provider = OverlayDataProvider.empty().with("optional", null);
+
+		// Then
+		assertThat(provider.containsKey("optional"), is(true));
+		assertThat(provider.lookup("optional"), nullValue());
+		assertThat(provider.getRawObject("missing"), nullValue());
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReturnSameProviderWhenNothingChanges() throws Exception {
+		// Given
+		final OverlayDataProvider provider = OverlayDataProvider.empty().with("a", "1");
+
+		// Then
+		assertThat(provider.with("a", "1"), sameInstance(provider));
+		assertThat(provider.without("b"), sameInstance(provider));
+		assertThat(provider.withAll(Collections.<String, Object>emptyMap()), sameInstance(provider));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldDistinguishKeysWithEqualHashCodes() throws Exception {
+		// Given
+		final List<String> keys = Arrays.asList("AaAa", "AaBB", "BBAa", "BBBB");
+		assertThat(keys.get(0).hashCode(), is(keys.get(3).hashCode()));
+		OverlayDataProvider provider = OverlayDataProvider.empty().with("other", "x");
+		for (final String key : keys) {
+			provider = provider.with(key, key.toLowerCase());
+		}
+
+		// When
+		final OverlayDataProvider reduced = provider.without("AaBB").without("BBBB");
+
+		// Then
+		assertThat(provider.size(), is(5));
+		assertThat(provider.getKeys(), containsInAnyOrder("other", "AaAa", "AaBB", "BBAa", "BBBB"));
+		assertThat(reduced.size(), is(3));
+		assertThat(reduced.getRawObject("AaAa"), is((Object) "aaaa"));
+		assertThat(reduced.getRawObject("BBAa"), is((Object) "bbaa"));
+		assertThat(reduced.containsKey("AaBB"), is(false));
+		assertThat(reduced.getKeys(), containsInAnyOrder("other", "AaAa", "BBAa"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldBehaveLikeMapUnderRandomModifications() throws Exception {
+		// Given
+		final Random random = new Random(20151117L);
+		final Map<String, Object> expected = new HashMap<String, Object>();
+		OverlayDataProvider provider = OverlayDataProvider.empty();
+
+		// When
+		for (int i = 0; i < 20000; ++i) {
+			final String key = "key." + random.nextInt(3000);
+			if (random.nextInt(4) == 0) {
+				expected.remove(key);
+				provider = provider.without(key);
+			} else {
+				final Object value = (random.nextInt(10) == 0) ? null : Integer.toString(i);
+				expected.put(key, value);
+				provider = provider.with(key, value);
+			}
+		}
+
+		// Then
+		assertThat(provider.size(), is(expected.size()));
+		final List<String> keys = new ArrayList<String>(provider.getKeys());
+		assertThat(keys.size(), is(expected.size()));
+		assertThat(new HashSet<String>(keys), is(expected.keySet()));
+		for (int i = 0; i < 3000; ++i) {
+			final String key = "key." + i;
+			assertThat(provider.containsKey(key), is(expected.containsKey(key)));
+			assertThat(provider.getRawObject(key), is(expected.get(key)));
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldTakePriorityOverLowerSources() throws Exception {
+		// Given
+		final OverlayDataProvider base = OverlayDataProvider.empty().with("host", "localhost").with("port", "80");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.replaceDelegates(Arrays.<ConfigurationDataProvider>asList(
+				base.with("port", "8080").without("host"), base));
+
+		// Then
+		assertThat(provider.getRawObject("port"), is((Object) "8080"));
+		assertThat(provider.getRawObject("host"), is((Object) "localhost"));
+		assertThat(provider.isIndexed(base), is(false));
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestParallelSourceCreation {
+
+	private static final long CREATION_DELAY = 300L;
+
+	interface TestCfgObject {
+		String getName();
+		String getHost();
+	}
+
+	static volatile boolean failLowPriority;
+
+	@Produces
+	@ConfigurationSource(priority = 50)
+	static ConfigurationDataProvider createHighPriorityProvider() throws InterruptedException {
+		Thread.sleep(CREATION_DELAY);
+		return new MapDataProvider("name", "high");
+	}
+
+	@Produces
+	@ConfigurationSource(priority = 10)
+	static ConfigurationDataProvider createLowPriorityProvider() throws InterruptedException {
+		Thread.sleep(CREATION_DELAY);
+		if (failLowPriority) {
+			throw new IllegalStateException("low priority source unavailable");
+		}
+		return new MapDataProvider("name", "low", "host", "localhost");
+	}
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableParallelCreation() {
+		System.setProperty(ConfigurationInjectorSettings.SOURCE_CREATION_THREADS, "4");
+	}
+
+	@AfterClass
+	public static void resetParallelCreation() {
+		System.clearProperty(ConfigurationInjectorSettings.SOURCE_CREATION_THREADS);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldCreateSourcesInParallelKeepingPriorities() throws Exception {
+		// When
+		final SourceCreationReport report = extension.getSourceCreationReport();
+
+		// Then
+		assertThat(cfg.getName(), is("high"));
+		assertThat(cfg.getHost(), is("localhost"));
+		assertThat(report.hasFailures(), is(false));
+		assertThat(report.getThreadCount(), is(2));
+		final List<SourceCreationReport.Entry> entries = report.getEntries();
+		assertThat(entries, hasSize(2));
+		assertThat(entries.get(0).getPriority(), is(50));
+		assertThat(entries.get(1).getPriority(), is(10));
+		final long sequentialNanos = entries.get(0).getDurationNanos() + entries.get(1).getDurationNanos();
+		assertThat(report.getTotalNanos(), lessThan(sequentialNanos));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReportFailedSources() throws Exception {
+		// Given
+		failLowPriority = true;
+
+		// When
+		try {
+			extension.reloadProviders();
+			fail("reload succeeded without a source");
+		} catch (RuntimeException e) {
+			// expected
+		} finally {
+			failLowPriority = false;
+		}
+		final SourceCreationReport report = extension.getSourceCreationReport();
+
+		// Then
+		assertThat(report.hasFailures(), is(true));
+		assertThat(report.getEntries().get(0).getFailure(), nullValue());
+		assertThat(report.getEntries().get(1).getFailure(), notNullValue());
+		assertThat(report.toString().contains("FAILED"), is(true));
+		// Sources created before the failed reload remain in use
+		assertThat(cfg.getHost(), is("localhost"));
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import cz.auderis.tools.config.annotation.ConfigurationObject;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.CdiRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(CdiRunner.class)
+@AdditionalClasses(ConfigurationInjectorExtension.class)
+@SuppressWarnings("CdiInjectionPointsInspection")
+public class TestProviderReload {
+
+	interface TestCfgObject {
+		String getName();
+	}
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	static File cfgFile;
+
+	@Inject
+	@ConfigurationObject
+	TestCfgObject cfg;
+
+	@Inject
+	ConfigurationInjectorExtension extension;
+
+	@BeforeClass
+	public static void enableFastReload() {
+		System.setProperty(ConfigurationInjectorSettings.RELOAD_INTERVAL, "20");
+	}
+
+	@AfterClass
+	public static void resetReload() {
+		System.clearProperty(ConfigurationInjectorSettings.RELOAD_INTERVAL);
+	}
+
+	@Produces
+	@ConfigurationSource
+	static ConfigurationDataProvider createProvider() throws IOException {
+		if (null == cfgFile) {
+			cfgFile = folder.newFile("test.properties");
+			writeName("initial");
+		}
+		return new PropertiesFileProvider(cfgFile);
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldReloadProvidersProgrammatically() throws Exception {
+		// Given
+		writeName("before");
+		extension.reloadProviders();
+		final String nameBefore = cfg.getName();
+		writeName("after");
+
+		// When
+		extension.reloadProviders();
+		final String nameAfter = cfg.getName();
+
+		// Then
+		assertThat(nameBefore, is("before"));
+		assertThat(nameAfter, is("after"));
+	}
+
+	@Test(timeout = 10000L)
+	@Category(UnitTest.class)
+	public void shouldReloadProvidersWhenFileChanges() throws Exception {
+		// Given
+		writeName("original");
+		extension.reloadProviders();
+		final String nameBefore = cfg.getName();
+
+		// When
+		writeName("modified value");
+		while (!"modified value".equals(cfg.getName())) {
+			Thread.sleep(10L);
+		}
+
+		// Then
+		assertThat(nameBefore, is("original"));
+	}
+
+	static void writeName(String name) throws IOException {
+		final Properties properties = new Properties();
+		properties.setProperty("name", name);
+		final long previousModification = cfgFile.lastModified();
+		final OutputStream output = new FileOutputStream(cfgFile);
+		try {
+			properties.store(output, null);
+		} finally {
+			output.close();
+		}
+		// Make sure that the change is detectable even with coarse file time resolution
+		cfgFile.setLastModified(Math.max(previousModification + 2000L, System.currentTimeMillis()));
+	}
+
+	static class PropertiesFileProvider implements FileBackedDataProvider {
+		final File file;
+		final Properties properties;
+
+		PropertiesFileProvider(File file) throws IOException {
+			this.file = file;
+			this.properties = new Properties();
+			final InputStream input = new FileInputStream(file);
+			try {
+				properties.load(input);
+			} finally {
+				input.close();
+			}
+		}
+
+		@Override
+		public Collection<File> getSourceFiles() {
+			return Collections.singleton(file);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			return properties.containsKey(key);
+		}
+
+		@Override
+		public Object getRawObject(String key) {
+			return properties.getProperty(key);
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015 Boleslav Bobcik - Auderis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cz.auderis.tools.config.cdi;
+
+import cz.auderis.test.category.UnitTest;
+import cz.auderis.tools.config.ConfigurationDataProvider;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestTenantResolution {
+
+	interface TenantCfgObject {
+		String getHost();
+		int getPort();
+	}
+
+	static final class TestTenantResolver implements TenantResolver {
+		final ThreadLocal<String> currentTenant = new ThreadLocal<String>();
+		final Map<String, ConfigurationDataProvider> sources = new ConcurrentHashMap<String, ConfigurationDataProvider>();
+		final AtomicInteger sourceRequests = new AtomicInteger();
+
+		@Override
+		public String getCurrentTenant() {
+			return currentTenant.get();
+		}
+
+		@Override
+		public List<ConfigurationDataProvider> getTenantSources(String tenant) {
+			sourceRequests.incrementAndGet();
+			final ConfigurationDataProvider source = sources.get(tenant);
+			return (null != source) ? Collections.singletonList(source) : Collections.<ConfigurationDataProvider>emptyList();
+		}
+	}
+
+	final TestTenantResolver resolver = new TestTenantResolver();
+
+	@After
+	public void clearTenant() {
+		resolver.currentTenant.remove();
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldPreferSourcesOfCurrentTenant() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared", "port", "80"));
+		resolver.sources.put("a", new MapDataProvider("host", "a.example.com"));
+		provider.setTenantResolver(resolver, 16, 16);
+
+		// When
+		final Object sharedHost = provider.getRawObject("host");
+		resolver.currentTenant.set("a");
+		final Object tenantHost = provider.getRawObject("host");
+		final Object tenantPort = provider.getRawObject("port");
+		final boolean tenantContainsMissing = provider.containsKey("missing");
+		resolver.currentTenant.set("b");
+		final Object otherTenantHost = provider.getRawObject("host");
+
+		// Then
+		assertThat(sharedHost, is((Object) "shared"));
+		assertThat(tenantHost, is((Object) "a.example.com"));
+		assertThat(tenantPort, is((Object) "80"));
+		assertThat(tenantContainsMissing, is(false));
+		assertThat(otherTenantHost, is((Object) "shared"));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldShareDelegatesAmongTenants() throws Exception {
+		// Given
+		final MapDataProvider.WithLookup shared = new MapDataProvider.WithLookup("host", "shared", "port", "80");
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(shared);
+		final int tenantCount = 100;
+		for (int i = 0; i < tenantCount; ++i) {
+			resolver.sources.put("t" + i, new MapDataProvider.WithLookup("host", "t" + i + ".example.com"));
+		}
+		provider.setTenantResolver(resolver, tenantCount, 16);
+
+		// When
+		for (int round = 0; round < 3; ++round) {
+			for (int i = 0; i < tenantCount; ++i) {
+				resolver.currentTenant.set("t" + i);
+				assertThat(provider.getRawObject("host"), is((Object) ("t" + i + ".example.com")));
+				assertThat(provider.getRawObject("port"), is((Object) "80"));
+			}
+		}
+
+		// Then
+		assertThat(resolver.sourceRequests.get(), is(tenantCount));
+		assertThat(shared.lookupCalls.get(), is(3 * tenantCount));
+		for (int i = 0; i < tenantCount; ++i) {
+			final MapDataProvider.WithLookup tenantSource = (MapDataProvider.WithLookup) resolver.sources.get("t" + i);
+			// Missing key "port" is remembered by the cache of the tenant
+			assertThat(tenantSource.lookupCalls.get(), is(4));
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldDiscardLeastRecentlyActiveTenants() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared"));
+		for (int i = 0; i < 10; ++i) {
+			resolver.sources.put("t" + i, new MapDataProvider("host", "t" + i + ".example.com"));
+		}
+		provider.setTenantResolver(resolver, 4, 16);
+		for (int i = 0; i < 10; ++i) {
+			resolver.currentTenant.set("t" + i);
+			provider.getRawObject("host");
+		}
+
+		// When
+		resolver.currentTenant.set("t0");
+		final Object host = provider.getRawObject("host");
+
+		// Then
+		assertThat(host, is((Object) "t0.example.com"));
+		assertThat(resolver.sourceRequests.get(), is(11));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepTenantActiveInLaterTick() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared"));
+		for (int i = 0; i < 5; ++i) {
+			resolver.sources.put("t" + i, new MapDataProvider("host", "t" + i + ".example.com"));
+		}
+		provider.setTenantResolver(resolver, 4, 16);
+		for (int i = 0; i < 4; ++i) {
+			resolver.currentTenant.set("t" + i);
+			provider.getRawObject("host");
+		}
+		Thread.sleep(10L);
+		resolver.currentTenant.set("t0");
+		provider.getRawObject("host");
+
+		// When
+		resolver.currentTenant.set("t4");
+		provider.getRawObject("host");
+		resolver.currentTenant.set("t0");
+		final Object host = provider.getRawObject("host");
+
+		// Then
+		assertThat(host, is((Object) "t0.example.com"));
+		assertThat(resolver.sourceRequests.get(), is(5));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldObtainSourcesOfInvalidatedTenantAgain() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared"));
+		provider.setTenantResolver(resolver, 16, 16);
+		resolver.currentTenant.set("a");
+		final Object hostBefore = provider.getRawObject("host");
+		resolver.sources.put("a", new MapDataProvider("host", "a.example.com"));
+
+		// When
+		provider.invalidateTenant("a");
+		final Object hostAfter = provider.getRawObject("host");
+
+		// Then
+		assertThat(hostBefore, is((Object) "shared"));
+		assertThat(hostAfter, is((Object) "a.example.com"));
+		assertThat(resolver.sourceRequests.get(), is(2));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldKeepTenantSourcesWhenKeysAreInvalidated() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared"));
+		final MapDataProvider tenantSource = new MapDataProvider("host", "a.example.com");
+		resolver.sources.put("a", tenantSource);
+		provider.setTenantResolver(resolver, 16, 16);
+		resolver.currentTenant.set("a");
+		final Object hostBefore = provider.getRawObject("host");
+		tenantSource.data.remove("host");
+
+		// When
+		provider.invalidate(Collections.singleton("host"));
+		final Object hostAfter = provider.getRawObject("host");
+
+		// Then
+		assertThat(hostBefore, is((Object) "a.example.com"));
+		assertThat(hostAfter, is((Object) "shared"));
+		assertThat(resolver.sourceRequests.get(), is(1));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldLookUpAsynchronouslyInSourcesOfCallingTenant() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared", "port", "80"));
+		provider.addDelegate(new MapDataProvider("alias", "shared"));
+		resolver.sources.put("a", new MapDataProvider("host", "a.example.com"));
+		provider.setTenantResolver(resolver, 16, 16);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			resolver.currentTenant.set("a");
+
+			// When
+			final Object tenantHost = provider.lookupAsync("host", executor, null).get(5L, TimeUnit.SECONDS);
+			final Object sharedPort = provider.lookupAsync("port", executor, null).get(5L, TimeUnit.SECONDS);
+			final Object sharedAlias = provider.lookupAsync("alias", executor, null).get(5L, TimeUnit.SECONDS);
+
+			// Then
+			assertThat(tenantHost, is((Object) "a.example.com"));
+			assertThat(sharedPort, is((Object) "80"));
+			assertThat(sharedAlias, is((Object) "shared"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldNotMemoizeValuesOfMemoizingAccessorsAcrossTenants() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared", "port", "80"));
+		resolver.sources.put("a", new MapDataProvider("host", "a.example.com", "port", "8080"));
+		provider.setTenantResolver(resolver, 16, 16);
+		final TenantCfgObject cfg = (TenantCfgObject) AccessorLayout.of(TenantCfgObject.class).createAccessor(provider);
+
+		// When
+		final String sharedHost = cfg.getHost();
+		resolver.currentTenant.set("a");
+		final String tenantHost = cfg.getHost();
+		final int tenantPort = cfg.getPort();
+		resolver.currentTenant.remove();
+		final int sharedPort = cfg.getPort();
+
+		// Then
+		assertThat(sharedHost, is("shared"));
+		assertThat(tenantHost, is("a.example.com"));
+		assertThat(tenantPort, is(8080));
+		assertThat(sharedPort, is(80));
+	}
+
+	@Test
+	@Category(UnitTest.class)
+	public void shouldUseSharedDelegatesOnlyWithoutResolver() throws Exception {
+		// Given
+		final InjectorDataProvider provider = new InjectorDataProvider();
+		provider.addDelegate(new MapDataProvider("host", "shared"));
+		resolver.sources.put("a", new MapDataProvider("host", "a.example.com", "alias", "a"));
+		provider.setTenantResolver(resolver, 16, 16);
+		resolver.currentTenant.set("a");
+
+		// When
+		provider.setTenantResolver(null, 16, 16);
+
+		// Then
+		assertThat(provider.isTenantAware(), is(false));
+		assertThat(provider.getRawObject("host"), is((Object) "shared"));
+		assertThat(provider.getRawObject("alias"), nullValue());
+	}
+
+}